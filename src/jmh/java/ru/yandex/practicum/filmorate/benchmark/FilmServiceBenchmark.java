@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути FilmService: чтение популярного и постановка/снятие лайка.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmServiceBenchmark {
+
+    @Benchmark
+    public List<Film> getPopular(FilmorateFixture fixture) {
+        return fixture.filmService.getPopular(10);
+    }
+
+    @Benchmark
+    public void addAndRemoveLike(FilmorateFixture fixture) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int filmId = FilmorateFixture.skewed(random, fixture.size);
+        // Запасные пользователи не имеют лайков, поэтому пара всегда новая и состояние не дрейфует
+        int userId = fixture.size + 1 + random.nextInt(FilmorateFixture.SPARE_USERS);
+        fixture.filmService.addLike(filmId, userId);
+        fixture.filmService.removeLike(filmId, userId);
+    }
+}
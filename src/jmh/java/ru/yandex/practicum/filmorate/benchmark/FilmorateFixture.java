@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+/**
+ * Общий для бенчмарков набор данных: приложение на выбранном бэкенде,
+ * size фильмов и пользователей, лайки и дружба со степенным (скошенным) распределением —
+ * немногие популярные фильмы и «знаменитости» собирают большую часть связей.
+ */
+@State(Scope.Benchmark)
+public class FilmorateFixture {
+    // Пользователи сверх size без лайков и друзей: на них бенчмарки ставят и снимают лайки
+    static final int SPARE_USERS = 1000;
+    // Чем больше показатель, тем сильнее связи концентрируются на первых id
+    private static final double SKEW = 3.0;
+
+    @Param({"inmemory", "jdbc"})
+    public String backend;
+
+    // Число фильмов и число пользователей
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"5"})
+    public int likesPerUser;
+
+    @Param({"10"})
+    public int friendsPerUser;
+
+    FilmService filmService;
+    UserService userService;
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String url = "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        ConfigurableApplicationContext populating = start(url, true);
+        populate(populating);
+        if ("jdbc".equals(backend)) {
+            // Перезапуск на той же базе: сервисы прогреваются из неё так же, как при обычном рестарте
+            populating.close();
+            context = start(url, false);
+        } else {
+            context = populating;
+        }
+        filmService = context.getBean(FilmService.class);
+        userService = context.getBean(UserService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Случайный id от 1 до n, смещённый к малым значениям.
+     */
+    static int skewed(Random random, int n) {
+        return 1 + (int) (n * Math.pow(random.nextDouble(), SKEW));
+    }
+
+    private ConfigurableApplicationContext start(String url, boolean initSchema) {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF);
+        if ("inmemory".equals(backend)) {
+            builder.profiles("inmemory");
+        }
+        // Параметры командной строки перекрывают application.properties
+        return builder.run(
+                "--spring.datasource.url=" + url,
+                "--spring.sql.init.mode=" + (initSchema ? "always" : "never"),
+                "--spring.sql.init.data-locations=",
+                "--logging.level.root=WARN",
+                "--logging.level.org.zalando.logbook=OFF");
+    }
+
+    private void populate(ConfigurableApplicationContext ctx) {
+        FilmService films = ctx.getBean(FilmService.class);
+        UserService users = ctx.getBean(UserService.class);
+        users.createUsers(generate(size + SPARE_USERS, this::user));
+        films.createFilms(generate(size, this::film));
+
+        Random random = new Random(42);
+        films.addLikes(generate(size * likesPerUser,
+                i -> new FilmLike(skewed(random, size), 1 + i / likesPerUser)));
+
+        if ("jdbc".equals(backend)) {
+            // Отдельного пакетного API для дружбы нет, поэтому таблица заполняется напрямую
+            List<Object[]> pairs = new ArrayList<>();
+            JdbcTemplate jdbcTemplate = ctx.getBean(JdbcTemplate.class);
+            for (int userId = 1; userId <= size; userId++) {
+                for (int j = 0; j < friendsPerUser; j++) {
+                    int friendId = skewed(random, size);
+                    if (friendId != userId) {
+                        pairs.add(new Object[]{userId, friendId, friendId, userId});
+                    }
+                }
+                if (pairs.size() >= 10_000 || userId == size) {
+                    jdbcTemplate.batchUpdate("MERGE INTO friends (user_id, friend_id) KEY (user_id, friend_id) "
+                            + "VALUES (?, ?), (?, ?)", pairs);
+                    pairs.clear();
+                }
+            }
+        } else {
+            // Контекст не перезапускается, поэтому дружба идёт через сервис: он ведёт граф друзей в памяти,
+            // который иначе заполняется только при старте
+            for (int userId = 1; userId <= size; userId++) {
+                for (int j = 0; j < friendsPerUser; j++) {
+                    int friendId = skewed(random, size);
+                    if (friendId != userId) {
+                        users.addFriend(userId, friendId);
+                    }
+                }
+            }
+        }
+    }
+
+    private User user(int i) {
+        User user = new User();
+        user.setEmail("user" + i + "@bench.local");
+        user.setLogin("user" + i);
+        user.setName("User " + i);
+        user.setBirthday(LocalDate.of(1990, 1, 1).plusDays(i % 10_000));
+        return user;
+    }
+
+    private Film film(int i) {
+        Film film = new Film();
+        film.setName("Film " + i);
+        film.setDescription("Benchmark film number " + i);
+        film.setReleaseDate(LocalDate.of(1950, 1, 1).plusDays(i % 25_000));
+        film.setDuration(60 + i % 120);
+        return film;
+    }
+
+    // Ленивая последовательность: объекты создаются по мере чтения, а не списком целиком
+    private static <T> Iterable<T> generate(int count, IntFunction<T> factory) {
+        return () -> new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public T next() {
+                return factory.apply(next++);
+            }
+        };
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути UserService: список друзей и общие друзья.
+ * Пользователи выбираются со смещением к «знаменитостям» с самыми длинными списками.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @Benchmark
+    public Set<User> getFriends(FilmorateFixture fixture) {
+        return fixture.userService.getFriends(FilmorateFixture.skewed(ThreadLocalRandom.current(), fixture.size));
+    }
+
+    @Benchmark
+    public Set<User> getCommonFriends(FilmorateFixture fixture) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return fixture.userService.getCommonFriends(
+                FilmorateFixture.skewed(random, fixture.size),
+                FilmorateFixture.skewed(random, fixture.size));
+    }
+}
@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.model.ChangeEvent;
+import ru.yandex.practicum.filmorate.service.ChangeFeed;
+
+import java.io.IOException;
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/feed")
+@Slf4j
+public class FeedController {
+    private final ChangeFeed feed;
+    private final Duration heartbeat;
+    private final Duration timeout;
+
+    public FeedController(ChangeFeed feed,
+                          @Value("${filmorate.feed.heartbeat:15s}") Duration heartbeat,
+                          @Value("${filmorate.feed.timeout:30m}") Duration timeout) {
+        this.feed = feed;
+        this.heartbeat = heartbeat;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Лента изменений в формате Server-Sent Events: фильмы, лайки (склеенные по фильму) и дружба.
+     * id каждого события — токен возобновления; клиент SSE сам присылает его в Last-Event-ID при переподключении.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        ChangeFeed.Subscription subscription = feed.subscribe(lastEventId);
+        // Отправка ждёт событий в своём виртуальном потоке и не занимает поток запроса
+        Thread sender = Thread.ofVirtual()
+                .name("feed-sender")
+                .start(() -> send(emitter, subscription));
+        emitter.onCompletion(() -> {
+            subscription.close();
+            sender.interrupt();
+        });
+        emitter.onTimeout(emitter::complete);
+        return emitter;
+    }
+
+    private void send(SseEmitter emitter, ChangeFeed.Subscription subscription) {
+        try {
+            while (!subscription.isClosed()) {
+                ChangeEvent event = subscription.next(heartbeat);
+                if (event == null) {
+                    // Комментарий раз в heartbeat не даёт прокси закрыть молчащее соединение
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                    continue;
+                }
+                emitter.send(SseEmitter.event()
+                        .id(feed.resumeToken(event.getId()))
+                        .name(event.getType().name())
+                        .data(event, MediaType.APPLICATION_JSON));
+                if (event.getType() == ChangeEvent.Type.OVERFLOW) {
+                    emitter.complete();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Клиент отключился или ответ уже завершён
+            log.debug("Подписка на ленту закрыта: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscription.close();
+        }
+    }
+}
@@ -1,24 +1,55 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.LikeImportResult;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ResourceVersions;
+import ru.yandex.practicum.filmorate.service.film.FilmFilter;
 import ru.yandex.practicum.filmorate.service.film.FilmService;
+import ru.yandex.practicum.filmorate.service.film.PopularSnapshots;
 
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/films")
 @Slf4j
 public class FilmController {
     private static final String LIKE_PATH = "/{id}/like/{userId}";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String MISSING_IDS_HEADER = "X-Missing-Ids";
 
     private final FilmService filmService;
+    private final PopularSnapshots popularSnapshots;
+    private final ResourceVersions versions;
+    private final ObjectMapper mapper;
 
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService,
+                          PopularSnapshots popularSnapshots,
+                          ResourceVersions versions,
+                          ObjectMapper mapper) {
         this.filmService = filmService;
+        this.popularSnapshots = popularSnapshots;
+        this.versions = versions;
+        this.mapper = mapper;
     }
 
     /**
@@ -29,6 +60,22 @@ public class FilmController {
         return filmService.createFilm(film);
     }
 
+    /**
+     * Пакетно создаёт фильмы из JSON-массива. Ошибки отдельных записей возвращаются в результате.
+     */
+    @PostMapping("/batch")
+    public BatchResult<Film> addFilms(@RequestBody List<Film> films) {
+        return filmService.createFilms(films);
+    }
+
+    /**
+     * Пакетно создаёт фильмы из потока NDJSON (по одному фильму на строку), разбирая его по мере чтения.
+     */
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BatchResult<Film> addFilmsNdjson(InputStream body) {
+        return filmService.createFilms(NdjsonRequests.read(body, mapper.readerFor(Film.class)));
+    }
+
     /**
      * Обновляет существующий фильм с проверкой и валидацией.
      */
@@ -39,17 +86,83 @@ public class FilmController {
 
     /**
      * Возвращает все фильмы.
+     * С параметрами afterId/limit — одну страницу в порядке id, курсор следующей страницы в заголовке X-Next-Cursor.
+     * С условиями releasedFrom/releasedTo, minDuration/maxDuration (границы включаются), minLikes или sort —
+     * до limit подходящих фильмов в порядке sort: likes (по умолчанию), releaseDate или duration.
+     * С параметром ids=1,2,3 — эти фильмы одним запросом к хранилищу, ненайденные id — в заголовке X-Missing-Ids.
      */
     @GetMapping
-    public Collection<Film> getAllFilms() {
-        return filmService.getAllFilms();
+    public ResponseEntity<Collection<Film>> getAllFilms(
+            @RequestParam(required = false) List<Integer> ids,
+            @RequestParam(required = false) Integer afterId,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate releasedTo,
+            @RequestParam(required = false) Long minDuration,
+            @RequestParam(required = false) Long maxDuration,
+            @RequestParam(required = false) Integer minLikes,
+            @RequestParam(required = false) String sort
+    ) {
+        if (ids != null) {
+            return getByIds(ids);
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        if (releasedFrom != null || releasedTo != null || minDuration != null || maxDuration != null
+                || minLikes != null || sort != null) {
+            if (afterId != null) {
+                throw new ValidationException("Курсор afterId не сочетается с условиями выборки.");
+            }
+            FilmFilter.Sort order = sort == null ? FilmFilter.Sort.LIKES : FilmFilter.Sort.fromParam(sort);
+            return ResponseEntity.ok(filmService.filterFilms(new FilmFilter(
+                    releasedFrom, releasedTo, minDuration, maxDuration, minLikes, order, pageSize)));
+        }
+        if (afterId == null && limit == null) {
+            return ResponseEntity.ok(filmService.getAllFilms());
+        }
+        List<Film> page = filmService.getFilmsPage(afterId == null ? 0 : afterId, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        // Полная страница — возможно, есть следующая: отдаём курсор для параметра afterId
+        if (page.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()));
+        }
+        return response.body(page);
+    }
+
+    // Найденные записи в порядке запроса; id, которых нет, перечисляются в заголовке X-Missing-Ids
+    private ResponseEntity<Collection<Film>> getByIds(List<Integer> ids) {
+        List<Film> found = filmService.getFilmsByIds(ids);
+        Set<Integer> foundIds = new HashSet<>();
+        found.forEach(film -> foundIds.add(film.getId()));
+        String missing = ids.stream()
+                .filter(id -> !foundIds.contains(id))
+                .distinct()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!missing.isEmpty()) {
+            response.header(MISSING_IDS_HEADER, missing);
+        }
+        return response.body(found);
+    }
+
+    /**
+     * Потоково отдаёт фильмы в формате NDJSON, не собирая их в список (Accept: application/x-ndjson).
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamFilms() {
+        return NdjsonResponses.<Film>stream(mapper, filmService::streamFilms);
     }
 
     /**
      * Возвращает фильм по ID.
      */
     @GetMapping("/{id}")
-    public Film getFilmById(@PathVariable int id) {
+    public Film getFilmById(@PathVariable int id, WebRequest request) {
+        // Тег совпал у существующего фильма — Spring сам отвечает 304, строка фильма не читается.
+        // Для несуществующего id тег не сверяется: 304 подтвердил бы закэшированный клиентом 404
+        if (filmService.filmExists(id) && request.checkNotModified(versions.filmTag(id))) {
+            return null;
+        }
         return filmService.getFilmById(id);
     }
 
@@ -77,12 +190,94 @@ public class FilmController {
     }
 
     /**
-     * Возвращает самые популярные фильмы.
+     * Массово ставит лайки из JSON-массива пар (filmId, userId).
      */
-    @GetMapping("/popular")
-    public List<Film> getPopular(
+    @PostMapping("/likes/batch")
+    public LikeImportResult addLikes(@RequestBody List<FilmLike> likes) {
+        return filmService.addLikes(likes);
+    }
+
+    /**
+     * Массово ставит лайки из потока NDJSON (по одной паре на строку), разбирая его по мере чтения.
+     */
+    @PostMapping(path = "/likes/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public LikeImportResult addLikesNdjson(InputStream body) {
+        return filmService.addLikes(NdjsonRequests.read(body, mapper.readerFor(FilmLike.class)));
+    }
+
+    /**
+     * Те из пользователей userIds, кто лайкнул фильм, по возрастанию id.
+     */
+    @GetMapping("/{id}/likes/common")
+    public List<User> getLikedBy(
+            @PathVariable("id") int filmId,
+            @RequestParam List<Integer> userIds
+    ) {
+        return filmService.getLikedBy(filmId, userIds);
+    }
+
+    /**
+     * Друзья пользователя userId, лайкнувшие фильм, по возрастанию id.
+     */
+    @GetMapping("/{id}/likes/friends/{userId}")
+    public List<User> getFriendsWhoLiked(
+            @PathVariable("id") int filmId,
+            @PathVariable int userId
+    ) {
+        return filmService.getFriendsWhoLiked(filmId, userId);
+    }
+
+    /**
+     * Полнотекстовый поиск по названию и описанию: все слова запроса, можно началом слова.
+     */
+    @GetMapping("/search")
+    public List<Film> search(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "20") int limit
+    ) {
+        return filmService.search(query, limit);
+    }
+
+    /**
+     * Фильмы с наибольшим числом лайков за последний час, сутки или неделю (window = 1h, 24h, 7d).
+     */
+    @GetMapping("/trending")
+    public List<Film> getTrending(
+            @RequestParam(value = "window", defaultValue = "24h") String window,
             @RequestParam(value = "count", defaultValue = "10") int count
     ) {
-        return filmService.getPopular(count);
+        return filmService.getTrending(window, count);
+    }
+
+    /**
+     * Возвращает самые популярные фильмы.
+     * Для частых count тело берётся из готового снимка PopularSnapshots, ETag — по версии снимка.
+     * Остальные count считаются по рейтингу при запросе, ETag — по текущей версии рейтинга.
+     * На совпавший If-None-Match — 304.
+     */
+    @GetMapping("/popular")
+    public ResponseEntity<byte[]> getPopular(
+            @RequestParam(value = "count", defaultValue = "10") int count,
+            WebRequest request
+    ) throws JsonProcessingException {
+        PopularSnapshots.Snapshot snapshot = popularSnapshots.current();
+        byte[] json = snapshot.json(count);
+        if (json != null) {
+            if (request.checkNotModified(versions.popularTag(snapshot.version()))) {
+                return null;
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(json);
+        }
+        // Версию читаем до данных: изменение между ними даст устаревший тег и лишний 200, но не устаревшее тело
+        long version = versions.popularVersion();
+        if (request.checkNotModified(versions.popularTag(version))) {
+            return null;
+        }
+        // Одинаковые одновременные запросы схлопывает FilmService.getPopular
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(mapper.writeValueAsBytes(filmService.getPopular(count)));
     }
 }
\ No newline at end of file
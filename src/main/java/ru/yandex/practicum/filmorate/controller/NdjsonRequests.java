@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Потоковое чтение тела запроса в формате NDJSON: по одному JSON-объекту на строку.
+ * Строки разбираются по мере обхода, тело запроса целиком в память не читается.
+ */
+final class NdjsonRequests {
+
+    private NdjsonRequests() {
+    }
+
+    /**
+     * Возвращает последовательность объектов из тела запроса. Пустые строки пропускаются,
+     * на месте строки, которую не удалось разобрать, последовательность отдаёт null.
+     */
+    static <T> Iterable<T> read(InputStream body, ObjectReader reader) {
+        BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        return () -> new Iterator<>() {
+            private String next = readLine();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                String line = next;
+                next = readLine();
+                try {
+                    return reader.readValue(line);
+                } catch (JsonProcessingException e) {
+                    return null;
+                }
+            }
+
+            private String readLine() {
+                try {
+                    String line;
+                    do {
+                        line = lines.readLine();
+                    } while (line != null && line.isBlank());
+                    return line;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Потоковая отдача объектов в формате NDJSON: по одному JSON-объекту на строку.
+ * Объекты пишутся в ответ по мере поступления из источника, общий список не строится.
+ */
+final class NdjsonResponses {
+
+    private NdjsonResponses() {
+    }
+
+    /**
+     * @param mapper ObjectMapper приложения
+     * @param source источник, передающий объекты по одному в переданный ему получатель
+     */
+    static <T> StreamingResponseBody stream(ObjectMapper mapper, Consumer<Consumer<T>> source) {
+        return out -> {
+            // Поток ответа закрывает сам Spring, поэтому генератор не должен закрывать его
+            try (SequenceWriter writer = mapper.writer()
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .withRootValueSeparator("\n")
+                    .writeValues(out)) {
+                source.accept(item -> {
+                    try {
+                        writer.write(item);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.write('\n');
+        };
+    }
+}
@@ -1,21 +1,47 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BatchResult;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ResourceVersions;
+import ru.yandex.practicum.filmorate.service.film.RecommendationService;
 import ru.yandex.practicum.filmorate.service.user.UserService;
 
+import java.io.InputStream;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/users")
 @Slf4j
 public class UserController {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String MISSING_IDS_HEADER = "X-Missing-Ids";
+
     private final UserService userService;
+    private final RecommendationService recommendationService;
+    private final ResourceVersions versions;
+    private final ObjectMapper mapper;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService,
+                          RecommendationService recommendationService,
+                          ResourceVersions versions,
+                          ObjectMapper mapper) {
         this.userService = userService;
+        this.recommendationService = recommendationService;
+        this.versions = versions;
+        this.mapper = mapper;
     }
 
     /**
@@ -26,6 +52,22 @@ public class UserController {
         return userService.createUser(user);
     }
 
+    /**
+     * Пакетно создаёт пользователей из JSON-массива. Ошибки отдельных записей возвращаются в результате.
+     */
+    @PostMapping("/batch")
+    public BatchResult<User> addUsers(@RequestBody List<User> users) {
+        return userService.createUsers(users);
+    }
+
+    /**
+     * Пакетно создаёт пользователей из потока NDJSON (по одному пользователю на строку), разбирая его по мере чтения.
+     */
+    @PostMapping(path = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public BatchResult<User> addUsersNdjson(InputStream body) {
+        return userService.createUsers(NdjsonRequests.read(body, mapper.readerFor(User.class)));
+    }
+
     /**
      * Обновляет существующего пользователя с валидацией.
      */
@@ -36,17 +78,66 @@ public class UserController {
 
     /**
      * Возвращает всех пользователей.
+     * С параметрами afterId/limit — одну страницу в порядке id, курсор следующей страницы в заголовке X-Next-Cursor.
+     * С параметром ids=1,2,3 — этих пользователей одним запросом к хранилищу, ненайденные id — в заголовке X-Missing-Ids.
      */
     @GetMapping
-    public Collection<User> getAllUsers() {
-        return userService.getAllUsers();
+    public ResponseEntity<Collection<User>> getAllUsers(
+            @RequestParam(required = false) List<Integer> ids,
+            @RequestParam(required = false) Integer afterId,
+            @RequestParam(required = false) Integer limit
+    ) {
+        if (ids != null) {
+            return getByIds(ids);
+        }
+        if (afterId == null && limit == null) {
+            return ResponseEntity.ok(userService.getAllUsers());
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        List<User> page = userService.getUsersPage(afterId == null ? 0 : afterId, pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        // Полная страница — возможно, есть следующая: отдаём курсор для параметра afterId
+        if (page.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.get(page.size() - 1).getId()));
+        }
+        return response.body(page);
+    }
+
+    // Найденные записи в порядке запроса; id, которых нет, перечисляются в заголовке X-Missing-Ids
+    private ResponseEntity<Collection<User>> getByIds(List<Integer> ids) {
+        List<User> found = userService.getUsersByIds(ids);
+        Set<Integer> foundIds = new HashSet<>();
+        found.forEach(user -> foundIds.add(user.getId()));
+        String missing = ids.stream()
+                .filter(id -> !foundIds.contains(id))
+                .distinct()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!missing.isEmpty()) {
+            response.header(MISSING_IDS_HEADER, missing);
+        }
+        return response.body(found);
+    }
+
+    /**
+     * Потоково отдаёт пользователей в формате NDJSON, не собирая их в список (Accept: application/x-ndjson).
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamUsers() {
+        return NdjsonResponses.<User>stream(mapper, userService::streamUsers);
     }
 
     /**
      * Возвращает пользователя по ID.
      */
     @GetMapping("/{id}")
-    public User getUserById(@PathVariable int id) {
+    public User getUserById(@PathVariable int id, WebRequest request) {
+        // Тег совпал у существующего пользователя — Spring сам отвечает 304, строка не читается.
+        // Для несуществующего id тег не сверяется: 304 подтвердил бы закэшированный клиентом 404
+        if (userService.userExists(id) && request.checkNotModified(versions.userTag(id))) {
+            return null;
+        }
         return userService.getUserById(id);
     }
 
@@ -76,7 +167,10 @@ public class UserController {
      * Список друзей пользователя.
      */
     @GetMapping("/{id}/friends")
-    public Set<User> getFriends(@PathVariable("id") int userId) {
+    public Set<User> getFriends(@PathVariable("id") int userId, WebRequest request) {
+        if (userService.userExists(userId) && request.checkNotModified(versions.friendsTag(userId))) {
+            return null;
+        }
         return userService.getFriends(userId);
     }
 
@@ -90,4 +184,15 @@ public class UserController {
     ) {
         return userService.getCommonFriends(userId, otherId);
     }
+
+    /**
+     * Фильмы, рекомендованные пользователю по лайкам пользователей с похожими вкусами.
+     */
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(
+            @PathVariable("id") int userId,
+            @RequestParam(defaultValue = "10") int count
+    ) {
+        return recommendationService.getRecommendations(userId, count);
+    }
 }
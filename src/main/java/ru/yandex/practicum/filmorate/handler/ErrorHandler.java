@@ -1,6 +1,8 @@
 package ru.yandex.practicum.filmorate.handler;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
@@ -41,6 +43,16 @@ public class ErrorHandler {
         );
     }
 
+    // База перегружена: свободного соединения не нашлось за отведённое время (см. JdbcBulkhead)
+    @ExceptionHandler({CannotGetJdbcConnectionException.class, CannotCreateTransactionException.class})
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public ErrorResponse handleUnavailable(Exception e) {
+        return new ErrorResponse(
+                "Service unavailable",
+                e.getMessage()
+        );
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ErrorResponse handleOther(Exception e) {
@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.zalando.logbook.Correlation;
+import org.zalando.logbook.HttpMessage;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Precorrelation;
+import org.zalando.logbook.Sink;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sink для Logbook, который не занимает поток запроса форматированием и записью лога.
+ * В потоке запроса принимается только решение о выборке и снимается копия обмена с обрезанными
+ * телами; сериализация в JSON и запись выполняются отдельным потоком-писателем.
+ * Если очередь заполнена, обмен отбрасывается и учитывается в счётчике, а запрос не ждёт.
+ * При filmorate.http-log.mode=sync бин не создаётся и Logbook пишет синхронно своим Sink по умолчанию.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.http-log.mode", havingValue = "async", matchIfMissing = true)
+@Slf4j
+public class AsyncHttpLogSink implements Sink, MeterBinder {
+    private static final String TRUNCATED_MARKER = "...";
+
+    private final ObjectMapper mapper;
+    private final HttpLogSampler sampler;
+    private final int maxBodySize;
+    private final BlockingQueue<HttpExchange> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public AsyncHttpLogSink(ObjectMapper mapper,
+                            @Value("${filmorate.http-log.queue-capacity:10000}") int queueCapacity,
+                            @Value("${filmorate.http-log.max-body-size:2048}") int maxBodySize,
+                            @Value("${filmorate.http-log.sample-rate:1.0}") double sampleRate,
+                            @Value("${filmorate.http-log.always-log-errors:true}") boolean alwaysLogErrors,
+                            @Value("${filmorate.http-log.routes:}") String routes) {
+        this.mapper = mapper;
+        this.sampler = new HttpLogSampler(sampleRate, alwaysLogErrors, routes);
+        this.maxBodySize = maxBodySize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = Thread.ofPlatform()
+                .name("http-log-writer")
+                .daemon()
+                .start(this::drainLoop);
+    }
+
+    @Override
+    public boolean isActive() {
+        return log.isInfoEnabled();
+    }
+
+    @Override
+    public void write(Precorrelation precorrelation, HttpRequest request) {
+        // Запрос пишется вместе с ответом одной записью в write(Correlation, ...)
+    }
+
+    @Override
+    public void write(Correlation correlation, HttpRequest request, HttpResponse response) throws IOException {
+        if (!sampler.shouldLog(request.getPath(), response.getStatus())) {
+            return;
+        }
+        HttpExchange exchange = new HttpExchange(
+                correlation.getId(),
+                correlation.getStart().toString(),
+                correlation.getDuration().toMillis(),
+                request.getRemote(),
+                request.getMethod(),
+                request.getRequestUri(),
+                bodyOf(request),
+                response.getStatus(),
+                bodyOf(response));
+        if (!queue.offer(exchange)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Публикует число отброшенных из-за переполнения очереди обменов и текущую длину очереди.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.http.log.dropped", dropped, AtomicLong::get)
+                .description("HTTP-обмены, не попавшие в лог из-за переполнения очереди")
+                .register(registry);
+        Gauge.builder("filmorate.http.log.queue", queue, BlockingQueue::size)
+                .description("HTTP-обмены, ожидающие записи в лог")
+                .register(registry);
+    }
+
+    /**
+     * Количество обменов, отброшенных из-за переполнения очереди.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join();
+    }
+
+    private String bodyOf(HttpMessage message) throws IOException {
+        byte[] body = message.getBody();
+        if (body.length == 0) {
+            return null;
+        }
+        // Декодируем только первые maxBodySize байт, а не всё тело целиком
+        Charset charset = message.getCharset();
+        if (body.length <= maxBodySize) {
+            return new String(body, charset);
+        }
+        return new String(body, 0, maxBodySize, charset) + TRUNCATED_MARKER;
+    }
+
+    private void drainLoop() {
+        List<HttpExchange> batch = new ArrayList<>();
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+            writeAll(batch);
+        }
+        // При остановке дописываем то, что уже успело попасть в очередь
+        queue.drainTo(batch);
+        writeAll(batch);
+    }
+
+    private void writeAll(List<HttpExchange> batch) {
+        for (HttpExchange exchange : batch) {
+            try {
+                log.info(mapper.writeValueAsString(exchange));
+            } catch (JsonProcessingException e) {
+                log.warn("Не удалось сериализовать HTTP-обмен {}", exchange.correlation(), e);
+            }
+        }
+        batch.clear();
+    }
+
+    private record HttpExchange(String correlation, String time, long durationMs, String remote,
+                                String method, String uri, String requestBody,
+                                int status, String responseBody) {
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import org.springframework.util.AntPathMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Решает, попадёт ли HTTP-обмен в лог.
+ * Ошибки (статус 4xx/5xx) логируются всегда, если это включено; остальные обмены — с долей
+ * первого подходящего маршрута, а если ни один не подошёл — с долей по умолчанию.
+ */
+class HttpLogSampler {
+    private final AntPathMatcher matcher = new AntPathMatcher();
+    private final double defaultRate;
+    private final boolean alwaysLogErrors;
+    private final List<Route> routes;
+
+    /**
+     * @param routes маршруты в виде "шаблон=доля" через запятую, например "/films/popular=0.01,/users/**=0.1"
+     */
+    HttpLogSampler(double defaultRate, boolean alwaysLogErrors, String routes) {
+        this.defaultRate = defaultRate;
+        this.alwaysLogErrors = alwaysLogErrors;
+        this.routes = parseRoutes(routes);
+    }
+
+    boolean shouldLog(String path, int status) {
+        if (alwaysLogErrors && status >= 400) {
+            return true;
+        }
+        double rate = rateFor(path);
+        return rate >= 1.0 || (rate > 0.0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    private double rateFor(String path) {
+        for (Route route : routes) {
+            if (matcher.match(route.pattern(), path)) {
+                return route.rate();
+            }
+        }
+        return defaultRate;
+    }
+
+    private static List<Route> parseRoutes(String routes) {
+        List<Route> result = new ArrayList<>();
+        if (routes == null || routes.isBlank()) {
+            return result;
+        }
+        for (String rule : routes.split(",")) {
+            String[] parts = rule.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Неверное правило логирования маршрута: " + rule);
+            }
+            result.add(new Route(parts[0].trim(), Double.parseDouble(parts[1].trim())));
+        }
+        return result;
+    }
+
+    private record Route(String pattern, double rate) {
+    }
+}
@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сообщает о виртуальных потоках, закреплённых за потоком-носителем дольше порога:
+ * блокировка внутри synchronized или нативного вызова не отпускает носитель,
+ * и при массовом закреплении виртуальные потоки перестают масштабироваться.
+ * События jdk.VirtualThreadPinned читаются из JFR в фоне и пишутся в лог со стеком.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnProperty(name = "filmorate.threads.pinning-monitor.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class PinnedThreadMonitor implements MeterBinder {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    // Сколько верхних кадров стека попадает в лог
+    private static final int LOGGED_FRAMES = 12;
+
+    private final RecordingStream stream;
+    private final AtomicLong pinned = new AtomicLong();
+
+    public PinnedThreadMonitor(@Value("${filmorate.threads.pinning-monitor.threshold:20ms}") Duration threshold) {
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::report);
+        stream.startAsync();
+    }
+
+    /**
+     * Публикует число случаев закрепления, превысивших порог.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("filmorate.threads.pinned", pinned, AtomicLong::get)
+                .description("Виртуальные потоки, закреплённые за носителем дольше порога")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        stream.close();
+    }
+
+    private void report(RecordedEvent event) {
+        pinned.incrementAndGet();
+        StringBuilder frames = new StringBuilder();
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace != null) {
+            List<RecordedFrame> recorded = stackTrace.getFrames();
+            for (int i = 0; i < Math.min(LOGGED_FRAMES, recorded.size()); i++) {
+                RecordedFrame frame = recorded.get(i);
+                frames.append("\n\tat ")
+                        .append(frame.getMethod().getType().getName())
+                        .append('.')
+                        .append(frame.getMethod().getName())
+                        .append(':')
+                        .append(frame.getLineNumber());
+            }
+        }
+        log.warn("Виртуальный поток закреплён за носителем на {} мс{}", event.getDuration().toMillis(), frames);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+// результат пакетной загрузки: созданные объекты и ошибки по отдельным строкам
+public class BatchResult<T> {
+    private final List<T> created = new ArrayList<>();     // созданные объекты с присвоенными id
+    private final List<RowError> errors = new ArrayList<>(); // строки, которые не удалось загрузить
+
+    public void addError(int index, String message) {
+        errors.add(new RowError(index, message));
+    }
+
+    @Data
+    // ошибка в строке index (нумерация с 0 в порядке запроса)
+    public static class RowError {
+        private final int index;
+        private final String message;
+    }
+}
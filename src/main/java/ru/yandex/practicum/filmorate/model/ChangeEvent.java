@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+// событие ленты изменений GET /feed; заполнены только поля, относящиеся к его типу
+public class ChangeEvent {
+    private long id;                    // порядковый номер события в ленте
+    private Type type;
+    private Film film;                  // FILM_CREATED, FILM_UPDATED
+    private Integer filmId;             // LIKES_CHANGED
+    private List<Integer> likedBy;      // LIKES_CHANGED: кто поставил лайк за окно склейки
+    private List<Integer> unlikedBy;    // LIKES_CHANGED: кто снял лайк за окно склейки
+    private Integer userId;             // FRIEND_ADDED, FRIEND_REMOVED
+    private Integer friendId;           // FRIEND_ADDED, FRIEND_REMOVED
+
+    public ChangeEvent(Type type) {
+        this.type = type;
+    }
+
+    public enum Type {
+        FILM_CREATED,
+        FILM_UPDATED,
+        LIKES_CHANGED,
+        FRIEND_ADDED,
+        FRIEND_REMOVED,
+        // Служебные: пропущенные события уже вытеснены из журнала — представление нужно построить заново
+        RESYNC,
+        // Служебные: подписчик не успевал читать, поток закрыт; переподключение с Last-Event-ID продолжит с места
+        OVERFLOW
+    }
+}
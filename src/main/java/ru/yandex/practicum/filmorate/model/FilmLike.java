@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+// лайк: пользователь userId оценил фильм filmId в момент likedAt (при переносе оценок из других систем)
+public class FilmLike {
+    // Время лайков, для которых оно неизвестно: такие лайки старые и в тренды не попадают
+    public static final Instant UNKNOWN_TIME = Instant.EPOCH;
+
+    private int filmId;
+    private int userId;
+    // null — время неизвестно, лайк считается старым (UNKNOWN_TIME), а не поставленным сейчас
+    private Instant likedAt;
+
+    public FilmLike(int filmId, int userId) {
+        this(filmId, userId, null);
+    }
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+// результат массовой загрузки лайков
+public class LikeImportResult {
+    private int added;          // новых лайков
+    private int duplicates;     // повторы внутри загрузки и уже существующие лайки
+    private final List<BatchResult.RowError> rejected = new ArrayList<>(); // пары с несуществующим фильмом или пользователем
+
+    public void addRejected(int index, String message) {
+        rejected.add(new BatchResult.RowError(index, message));
+    }
+}
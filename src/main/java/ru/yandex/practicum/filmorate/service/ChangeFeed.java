@@ -0,0 +1,283 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.ChangeEvent;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Лента изменений каталога, лайков и дружбы для GET /feed.
+ * События получают сквозной номер и попадают в кольцевой журнал последних journal-size событий:
+ * подписчик, переподключившийся с Last-Event-ID, получает пропущенное из журнала, а если оно уже
+ * вытеснено — событие RESYNC. У каждого подписчика своя ограниченная очередь; публикация в неё не ждёт,
+ * а при переполнении новые события подписчику больше не кладутся: он дочитывает очередь, получает OVERFLOW
+ * с номером последнего доставленного события и переподключается, продолжая из журнала.
+ * Лайки не публикуются по одному: за like-coalesce-interval они схлопываются по паре фильм-пользователь
+ * (последнее действие побеждает) и уходят одним событием LIKES_CHANGED на фильм.
+ */
+@Component
+@Slf4j
+public class ChangeFeed implements MeterBinder {
+    private final int subscriberBuffer;
+    // Метка запуска в токене возобновления: номер из прошлого запуска не совпадёт с текущими
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    // Журнал и номер последнего события меняются только под publishLock
+    private final ChangeEvent[] journal;
+    private long sequence;
+    private final ReentrantLock publishLock = new ReentrantLock();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final LongAdder overflows = new LongAdder();
+    // Ещё не опубликованные лайки: ключ — пара (filmId, userId), значение — true для лайка, false для снятия
+    private final Map<Long, Boolean> pendingLikes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService coalescer;
+
+    public ChangeFeed(@Value("${filmorate.feed.journal-size:10000}") int journalSize,
+                      @Value("${filmorate.feed.subscriber-buffer:1000}") int subscriberBuffer,
+                      @Value("${filmorate.feed.like-coalesce-interval:200ms}") Duration likeCoalesceInterval) {
+        this.journal = new ChangeEvent[journalSize];
+        this.subscriberBuffer = subscriberBuffer;
+        this.coalescer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "feed-likes-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = likeCoalesceInterval.toMillis();
+        coalescer.scheduleWithFixedDelay(this::publishLikesQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        coalescer.shutdownNow();
+        subscriptions.forEach(Subscription::close);
+    }
+
+    public void filmCreated(Film film) {
+        ChangeEvent event = new ChangeEvent(ChangeEvent.Type.FILM_CREATED);
+        event.setFilm(film);
+        publish(event);
+    }
+
+    public void filmUpdated(Film film) {
+        ChangeEvent event = new ChangeEvent(ChangeEvent.Type.FILM_UPDATED);
+        event.setFilm(film);
+        publish(event);
+    }
+
+    public void likeAdded(int filmId, int userId) {
+        pendingLikes.put(likeKey(filmId, userId), true);
+    }
+
+    public void likeRemoved(int filmId, int userId) {
+        pendingLikes.put(likeKey(filmId, userId), false);
+    }
+
+    public void friendAdded(int userId, int friendId) {
+        publish(friendEvent(ChangeEvent.Type.FRIEND_ADDED, userId, friendId));
+    }
+
+    public void friendRemoved(int userId, int friendId) {
+        publish(friendEvent(ChangeEvent.Type.FRIEND_REMOVED, userId, friendId));
+    }
+
+    /**
+     * Подписывает на ленту. lastEventId — токен последнего полученного события (заголовок Last-Event-ID)
+     * или null для подписки только на новые события.
+     */
+    public Subscription subscribe(String lastEventId) {
+        publishLock.lock();
+        try {
+            // Без Last-Event-ID подписчик уже «видел» всё до текущего события; replay уточняет точку возобновления
+            Subscription subscription = new Subscription(subscriberBuffer, sequence);
+            if (lastEventId != null) {
+                replay(subscription, lastEventId);
+            }
+            subscriptions.add(subscription);
+            return subscription;
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    /**
+     * Токен возобновления для события: его отдают как id события SSE и принимают обратно в Last-Event-ID.
+     */
+    public String resumeToken(long eventId) {
+        return epoch + "-" + eventId;
+    }
+
+    /**
+     * Публикует накопленные лайки: одно событие LIKES_CHANGED на фильм.
+     */
+    public void publishLikes() {
+        Map<Integer, ChangeEvent> byFilm = new LinkedHashMap<>();
+        for (Map.Entry<Long, Boolean> entry : pendingLikes.entrySet()) {
+            // remove(key, value) не заберёт действие, пришедшее уже после чтения entry: оно уйдёт следующим событием
+            if (!pendingLikes.remove(entry.getKey(), entry.getValue())) {
+                continue;
+            }
+            int filmId = (int) (entry.getKey() >>> 32);
+            int userId = (int) (long) entry.getKey();
+            ChangeEvent event = byFilm.computeIfAbsent(filmId, id -> {
+                ChangeEvent created = new ChangeEvent(ChangeEvent.Type.LIKES_CHANGED);
+                created.setFilmId(id);
+                created.setLikedBy(new ArrayList<>());
+                created.setUnlikedBy(new ArrayList<>());
+                return created;
+            });
+            (entry.getValue() ? event.getLikedBy() : event.getUnlikedBy()).add(userId);
+        }
+        byFilm.values().forEach(this::publish);
+    }
+
+    private void publishLikesQuietly() {
+        try {
+            publishLikes();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось опубликовать лайки в ленту", e);
+        }
+    }
+
+    private void publish(ChangeEvent event) {
+        publishLock.lock();
+        try {
+            event.setId(++sequence);
+            journal[(int) (sequence % journal.length)] = event;
+            // offer не ждёт: медленный подписчик переполняет только свою очередь
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(event);
+            }
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    private void replay(Subscription subscription, String lastEventId) {
+        long last = parseToken(lastEventId);
+        long oldest = Math.max(1, sequence - journal.length + 1);
+        if (last < oldest - 1 || last > sequence) {
+            ChangeEvent resync = new ChangeEvent(ChangeEvent.Type.RESYNC);
+            resync.setId(sequence);
+            subscription.offer(resync);
+            return;
+        }
+        subscription.lastDelivered = last;
+        for (long id = last + 1; id <= sequence; id++) {
+            subscription.offer(journal[(int) (id % journal.length)]);
+        }
+    }
+
+    // Токен чужого запуска или испорченный токен — -1, что всегда ведёт к RESYNC
+    private long parseToken(String token) {
+        String prefix = epoch + "-";
+        if (!token.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(token.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static ChangeEvent friendEvent(ChangeEvent.Type type, int userId, int friendId) {
+        ChangeEvent event = new ChangeEvent(type);
+        event.setUserId(userId);
+        event.setFriendId(friendId);
+        return event;
+    }
+
+    private static long likeKey(int filmId, int userId) {
+        return ((long) filmId << 32) | (userId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Публикует число подписчиков, переполнения их очередей и лайки, ждущие склейки.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.feed.subscribers", subscriptions, Set::size)
+                .description("Открытые подписки на ленту изменений")
+                .register(registry);
+        FunctionCounter.builder("filmorate.feed.overflows", overflows, LongAdder::sum)
+                .description("Подписки, закрытые из-за переполнения очереди")
+                .register(registry);
+        Gauge.builder("filmorate.feed.likes.pending", pendingLikes, Map::size)
+                .description("Изменения лайков, ожидающие публикации")
+                .register(registry);
+    }
+
+    /**
+     * Очередь событий одного подписчика. Читает её один поток отправки.
+     */
+    public final class Subscription {
+        private final BlockingQueue<ChangeEvent> queue;
+        private volatile boolean overflowed;
+        private volatile boolean closed;
+        // Точка возобновления для OVERFLOW: до первой доставки — событие, с которого подписка открыта
+        private long lastDelivered;
+
+        private Subscription(int capacity, long resumeFrom) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.lastDelivered = resumeFrom;
+        }
+
+        private void offer(ChangeEvent event) {
+            if (overflowed || closed) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                overflowed = true;
+                overflows.increment();
+            }
+        }
+
+        /**
+         * Следующее событие; null, если за timeout ничего не пришло.
+         * Когда очередь переполнилась и дочитана, возвращает OVERFLOW с номером последнего доставленного события —
+         * это последнее событие подписки.
+         */
+        public ChangeEvent next(Duration timeout) throws InterruptedException {
+            if (overflowed && queue.isEmpty()) {
+                ChangeEvent overflow = new ChangeEvent(ChangeEvent.Type.OVERFLOW);
+                overflow.setId(lastDelivered);
+                close();
+                return overflow;
+            }
+            ChangeEvent event = queue.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (event != null) {
+                lastDelivered = event.getId();
+            }
+            return event;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        public void close() {
+            closed = true;
+            subscriptions.remove(this);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Версии ресурсов для условных GET: фильма, пользователя, списка друзей пользователя и рейтинга популярных.
+ * Сервисы поднимают версию после каждого изменения, контроллеры строят из неё сильный ETag и отвечают 304
+ * на совпавший If-None-Match, не обращаясь ни к хранилищу, ни к Jackson.
+ * Версии фильмов и пользователей хранятся в фиксированном числе ячеек по id: два id в одной ячейке
+ * лишь иногда отдают 200 вместо 304, зато память не растёт с числом записей.
+ * В ETag входит метка запуска, чтобы тег, выданный до перезапуска, не совпал с новым.
+ * Те же версии входят в ключи SingleFlight: изменение даёт новый ключ, и запомненный результат не устаревает.
+ */
+@Component
+public class ResourceVersions {
+    private static final int SLOTS = 4096;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    // Общий счётчик: новая версия любого ресурса больше всех выданных ранее
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLongArray films = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray users = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray friends = new AtomicLongArray(SLOTS);
+    private final AtomicLong popular = new AtomicLong();
+    // Число изменений рейтинга с запуска: по нему снимки популярных решают, пора ли пересчитываться
+    private final AtomicLong popularChanges = new AtomicLong();
+
+    /**
+     * Изменились поля фильма filmId.
+     */
+    public void filmChanged(int filmId) {
+        films.set(slot(filmId), sequence.incrementAndGet());
+    }
+
+    /**
+     * Изменились поля пользователя userId.
+     */
+    public void userChanged(int userId) {
+        users.set(slot(userId), sequence.incrementAndGet());
+    }
+
+    /**
+     * Изменился список друзей пользователя userId (состав или данные кого-то из друзей).
+     */
+    public void friendsChanged(int userId) {
+        friends.set(slot(userId), sequence.incrementAndGet());
+    }
+
+    /**
+     * Изменился рейтинг популярных: лайки, новые фильмы или поля фильмов.
+     */
+    public void popularChanged() {
+        popularChanges.incrementAndGet();
+        popular.set(sequence.incrementAndGet());
+    }
+
+    public long filmVersion(int filmId) {
+        return films.get(slot(filmId));
+    }
+
+    public long userVersion(int userId) {
+        return users.get(slot(userId));
+    }
+
+    public long friendsVersion(int userId) {
+        return friends.get(slot(userId));
+    }
+
+    public String filmTag(int filmId) {
+        return tag("f", filmVersion(filmId));
+    }
+
+    public String userTag(int userId) {
+        return tag("u", userVersion(userId));
+    }
+
+    public String friendsTag(int userId) {
+        return tag("fr", friendsVersion(userId));
+    }
+
+    public long popularVersion() {
+        return popular.get();
+    }
+
+    public long popularChangeCount() {
+        return popularChanges.get();
+    }
+
+    public String popularTag(long version) {
+        return tag("p", version);
+    }
+
+    private String tag(String kind, long version) {
+        return "\"" + kind + "-" + epoch + "-" + version + "\"";
+    }
+
+    private static int slot(int id) {
+        return Math.floorMod(id, SLOTS);
+    }
+}
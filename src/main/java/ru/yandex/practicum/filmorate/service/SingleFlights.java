@@ -0,0 +1,68 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.SingleFlight;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Именованные SingleFlight для чтений сервисов с общим micro-TTL и метриками.
+ * Сервисы создают свои экземпляры в конструкторе; метрики регистрируются и для созданных
+ * до привязки к реестру, и для созданных после.
+ */
+@Component
+public class SingleFlights implements MeterBinder {
+    private final Duration ttl;
+    private final Map<String, SingleFlight<?, ?>> flights = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public SingleFlights(@Value("${filmorate.single-flight.ttl:50ms}") Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Новый SingleFlight с именем name (тег метрик filmorate.single-flight.calls).
+     */
+    public <K, V> SingleFlight<K, V> create(String name) {
+        SingleFlight<K, V> flight = new SingleFlight<>(ttl);
+        flights.put(name, flight);
+        MeterRegistry bound = registry;
+        if (bound != null) {
+            register(bound, name, flight);
+        }
+        return flight;
+    }
+
+    /**
+     * Публикует число вызовов каждого SingleFlight: загрузивших сами, дождавшихся чужой загрузки
+     * и получивших запомненный результат.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        flights.forEach((name, flight) -> register(registry, name, flight));
+    }
+
+    private static void register(MeterRegistry registry, String name, SingleFlight<?, ?> flight) {
+        counter(registry, name, "leader", flight, SingleFlight::leaders);
+        counter(registry, name, "joined", flight, SingleFlight::joined);
+        counter(registry, name, "cached", flight, SingleFlight::cached);
+    }
+
+    private static void counter(MeterRegistry registry, String name, String outcome,
+                                SingleFlight<?, ?> flight, ToDoubleFunction<SingleFlight<?, ?>> count) {
+        // Повторная регистрация с теми же тегами возвращает уже существующий счётчик
+        FunctionCounter.builder("filmorate.single-flight.calls", flight, count)
+                .description("Чтения через SingleFlight по исходу")
+                .tag("name", name)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,384 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.IntAdjacency;
+import ru.yandex.practicum.filmorate.util.IntBitmap;
+import ru.yandex.practicum.filmorate.util.IntPairConsumer;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Счётчики совместных лайков: для каждого фильма — сколько пользователей лайкнули его вместе с каждым
+ * другим фильмом, и множество фильмов каждого пользователя.
+ * Лайк пользователя фильму прибавляет единицу к паре этого фильма с каждым другим фильмом пользователя,
+ * снятие лайка — вычитает, так что изменение стоит O(число лайков пользователя); целиком счётчики строятся
+ * только при старте (load). Изменения одного пользователя идут по очереди под его блокировкой, иначе два
+ * одновременных лайка посчитали бы свою пару дважды. Строка фильма защищена блокировкой из фиксированного
+ * набора; две строки одновременно не блокируются. Пользователи и фильмы, затронутые изменениями, копятся
+ * до drainChanges — по ним RecommendationService решает, чьи рекомендации пересчитать.
+ * Счётчики хранятся в открытой адресации на массивах int, без упаковки в Integer.
+ * Пары считаются только у пользователей, лайкнувших не больше maxUserLikes фильмов: вклад пользователя —
+ * квадрат числа его лайков, и без предела один «лайкающий всё» занял бы память и время пересчёта за тысячи
+ * обычных. Число лайкнувших фильм (likers) учитывает всех. Пользователь, перешедший предел, забирает свои
+ * пары разом, вернувшийся под предел — разом их добавляет, так что счётчики совпадают с построенными load.
+ */
+@Component
+public class CoLikeIndex {
+    private static final int LOCK_STRIPES = 64;
+    private static final Runnable NO_LISTENER = () -> { };
+    private static final int[] NO_FILMS = new int[0];
+
+    // Пользователь → его фильмы
+    private final IntAdjacency userFilms = new IntAdjacency();
+    // Фильм → число лайкнувших и счётчики совместных лайков с другими фильмами
+    private final ConcurrentHashMap<Integer, CoLikes> rows = new ConcurrentHashMap<>();
+    private final ReentrantLock[] userLocks = new ReentrantLock[LOCK_STRIPES];
+    private final ReentrantReadWriteLock[] rowLocks = new ReentrantReadWriteLock[LOCK_STRIPES];
+    private final Set<Integer> changedUsers = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> changedFilms = ConcurrentHashMap.newKeySet();
+    private final int maxUserLikes;
+    private volatile Runnable changeListener = NO_LISTENER;
+
+    public CoLikeIndex(@Value("${filmorate.recommendations.max-user-likes:500}") int maxUserLikes) {
+        this.maxUserLikes = maxUserLikes;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            userLocks[i] = new ReentrantLock();
+            rowLocks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Строит счётчики по лайкам «id фильма → id пользователей». Вызывается один раз при старте, до первых изменений.
+     */
+    public void load(IntAdjacency likes) {
+        likes.forEachKey(filmId -> {
+            for (int userId : likes.values(filmId)) {
+                userFilms.add(userId, filmId);
+            }
+        });
+        userFilms.forEachKey(userId -> {
+            int[] films = userFilms.values(userId);
+            boolean counted = films.length <= maxUserLikes;
+            for (int film : films) {
+                updateRow(film, row -> {
+                    row.likers++;
+                    if (counted) {
+                        for (int other : films) {
+                            if (other != film) {
+                                row.add(other, 1);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Учитывает лайк userId фильму filmId.
+     */
+    public void likeAdded(int filmId, int userId) {
+        ReentrantLock lock = userLocks[Math.floorMod(userId, LOCK_STRIPES)];
+        lock.lock();
+        try {
+            if (!userFilms.add(userId, filmId)) {
+                return;
+            }
+            int[] films = userFilms.values(userId);
+            if (films.length <= maxUserLikes) {
+                apply(filmId, films, 1);
+            } else {
+                apply(filmId, NO_FILMS, 1);
+                // Лайк перевёл пользователя за предел: его пары между прежними фильмами больше не считаются
+                if (films.length == maxUserLikes + 1) {
+                    applyAll(without(films, filmId), -1);
+                }
+            }
+            changedUsers.add(userId);
+        } finally {
+            lock.unlock();
+        }
+        changeListener.run();
+    }
+
+    /**
+     * Учитывает снятие лайка userId с фильма filmId.
+     */
+    public void likeRemoved(int filmId, int userId) {
+        ReentrantLock lock = userLocks[Math.floorMod(userId, LOCK_STRIPES)];
+        lock.lock();
+        try {
+            if (!userFilms.remove(userId, filmId)) {
+                return;
+            }
+            int[] films = userFilms.values(userId);
+            if (films.length < maxUserLikes) {
+                apply(filmId, films, -1);
+            } else {
+                apply(filmId, NO_FILMS, -1);
+                // Пользователь вернулся под предел: пары оставшихся фильмов снова считаются
+                if (films.length == maxUserLikes) {
+                    applyAll(films, 1);
+                }
+            }
+            changedUsers.add(userId);
+        } finally {
+            lock.unlock();
+        }
+        changeListener.run();
+    }
+
+    /**
+     * Задаёт действие после каждого изменения, например постановку пересчёта в очередь.
+     */
+    void onChange(Runnable listener) {
+        changeListener = listener;
+    }
+
+    /**
+     * Забирает пользователей, чьи лайки изменились, и фильмы, чьи счётчики изменились, с прошлого вызова.
+     */
+    Changes drainChanges() {
+        return new Changes(drain(changedUsers), drain(changedFilms));
+    }
+
+    /**
+     * Пользователи, у которых есть хотя бы один лайк, по возрастанию id.
+     */
+    int[] users() {
+        IntBitmap users = new IntBitmap();
+        userFilms.forEachKey(users::add);
+        return users.toArray();
+    }
+
+    /**
+     * Рабочий счётчик одного потока расчёта, переиспользуется между пользователями.
+     */
+    CoLikes newScratch() {
+        return new CoLikes();
+    }
+
+    /**
+     * Рекомендует пользователю до limit фильмов, которых он ещё не лайкал. Оценка фильма — сумма его
+     * совместных лайков с фильмами пользователя. Фильмы, лайкнутые больше чем maxFilmLikers пользователями,
+     * в оценку не входят: совпадение по общепризнанному хиту почти ничего не говорит о вкусе, а строка
+     * такого фильма самая длинная.
+     *
+     * @return id фильмов по убыванию оценки, при равенстве — по возрастанию id
+     */
+    int[] recommend(int userId, int limit, int maxFilmLikers, CoLikes scratch) {
+        int[] films = userFilms.values(userId);
+        for (int film : films) {
+            ReentrantReadWriteLock.ReadLock lock = rowLock(film).readLock();
+            lock.lock();
+            try {
+                CoLikes row = rows.get(film);
+                if (row != null && row.likers <= maxFilmLikers) {
+                    row.forEach(scratch::add);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Ключ «оценка, затем меньший id» упакован в long для сортировки без объектов
+        long[] ranked = new long[scratch.size()];
+        int[] count = {0};
+        scratch.forEach((film, score) -> {
+            if (Arrays.binarySearch(films, film) < 0) {
+                ranked[count[0]++] = ((long) score << 32) | (Integer.MAX_VALUE - film);
+            }
+        });
+        scratch.clear();
+        Arrays.sort(ranked, 0, count[0]);
+        int[] result = new int[Math.min(limit, count[0])];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Integer.MAX_VALUE - (int) ranked[count[0] - 1 - i];
+        }
+        return result;
+    }
+
+    // Число лайкнувших filmId и пара filmId с каждым из others меняются на delta в обеих строках
+    private void apply(int filmId, int[] others, int delta) {
+        updateRow(filmId, row -> {
+            row.likers += delta;
+            for (int other : others) {
+                if (other != filmId) {
+                    row.add(other, delta);
+                }
+            }
+        });
+        changedFilms.add(filmId);
+        for (int other : others) {
+            if (other != filmId) {
+                updateRow(other, row -> row.add(filmId, delta));
+                changedFilms.add(other);
+            }
+        }
+    }
+
+    // Каждая пара внутри films меняется на delta; число лайкнувших не меняется
+    private void applyAll(int[] films, int delta) {
+        for (int film : films) {
+            updateRow(film, row -> {
+                for (int other : films) {
+                    if (other != film) {
+                        row.add(other, delta);
+                    }
+                }
+            });
+            changedFilms.add(film);
+        }
+    }
+
+    private static int[] without(int[] sorted, int value) {
+        int index = Arrays.binarySearch(sorted, value);
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, index);
+        System.arraycopy(sorted, index + 1, result, index, result.length - index);
+        return result;
+    }
+
+    private void updateRow(int filmId, Consumer<CoLikes> update) {
+        ReentrantReadWriteLock.WriteLock lock = rowLock(filmId).writeLock();
+        lock.lock();
+        try {
+            CoLikes row = rows.computeIfAbsent(filmId, k -> new CoLikes());
+            update.accept(row);
+            // Без лайкнувших нет и совместных лайков: строка пуста
+            if (row.likers == 0) {
+                rows.remove(filmId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantReadWriteLock rowLock(int filmId) {
+        return rowLocks[Math.floorMod(filmId, LOCK_STRIPES)];
+    }
+
+    // Элемент, добавленный во время обхода, остаётся до следующего вызова
+    private static IntBitmap drain(Set<Integer> ids) {
+        IntBitmap drained = new IntBitmap();
+        for (Iterator<Integer> it = ids.iterator(); it.hasNext(); ) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+
+    /**
+     * Изменившиеся с прошлого drainChanges пользователи и фильмы.
+     */
+    record Changes(IntBitmap users, IntBitmap films) {
+        boolean isEmpty() {
+            return users.isEmpty() && films.isEmpty();
+        }
+    }
+
+    /**
+     * Счётчики «id фильма → число» в открытой адресации с линейным пробированием. Нулевое значение означает
+     * пустую ячейку: счётчик, дошедший до нуля, удаляется со сдвигом следующих за ним ключей.
+     */
+    static final class CoLikes {
+        private static final int INITIAL_CAPACITY = 8;
+
+        // Число лайкнувших фильм; у рабочего счётчика не используется
+        private int likers;
+        private int[] keys = new int[INITIAL_CAPACITY];
+        private int[] values = new int[INITIAL_CAPACITY];
+        private int size;
+
+        void add(int key, int delta) {
+            int mask = keys.length - 1;
+            int slot = slot(key, mask);
+            while (values[slot] != 0) {
+                if (keys[slot] == key) {
+                    values[slot] += delta;
+                    if (values[slot] == 0) {
+                        delete(slot);
+                    }
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = delta;
+            // Заполнение не выше 3/4, иначе цепочки пробирования растут
+            if (++size * 4 > keys.length * 3) {
+                grow();
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        void forEach(IntPairConsumer action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != 0) {
+                    action.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        void clear() {
+            if (size > 0) {
+                Arrays.fill(values, 0);
+                size = 0;
+            }
+        }
+
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (values[next] == 0) {
+                    break;
+                }
+                // Ключ переезжает в дыру, если его цепочка начинается не позже дыры (с учётом кольца)
+                int home = slot(keys[next], mask);
+                if (next > hole ? home <= hole || home > next : home <= hole && home > next) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+            }
+            values[hole] = 0;
+            size--;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != 0) {
+                    int slot = slot(oldKeys[i], mask);
+                    while (values[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(int key, int mask) {
+            int hash = key * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
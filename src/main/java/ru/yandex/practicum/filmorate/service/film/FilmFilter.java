@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.time.LocalDate;
+
+/**
+ * Условия выборки фильмов для GET /films: диапазоны даты релиза и продолжительности (границы включаются),
+ * минимальное число лайков, порядок и размер выдачи. null — условие не задано.
+ */
+public record FilmFilter(LocalDate releasedFrom,
+                         LocalDate releasedTo,
+                         Long minDuration,
+                         Long maxDuration,
+                         Integer minLikes,
+                         Sort sort,
+                         int limit) {
+
+    /**
+     * Порядок выдачи: по лайкам — от большего числа, по дате и продолжительности — по возрастанию.
+     * При равенстве раньше идёт фильм с меньшим id.
+     */
+    public enum Sort {
+        LIKES("likes"),
+        RELEASE_DATE("releaseDate"),
+        DURATION("duration");
+
+        private final String param;
+
+        Sort(String param) {
+            this.param = param;
+        }
+
+        /**
+         * Порядок по значению параметра sort: likes, releaseDate или duration.
+         */
+        public static Sort fromParam(String value) {
+            for (Sort sort : values()) {
+                if (sort.param.equals(value)) {
+                    return sort;
+                }
+            }
+            throw new ValidationException("Сортировка должна быть одной из: likes, releaseDate, duration.");
+        }
+
+        public String param() {
+            return param;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Вторичные индексы фильмов по дате релиза и продолжительности для выборок вида
+ * «фильмы 1990–2000 годов короче 120 минут с наибольшим числом лайков».
+ * Каждый индекс — отсортированное множество пар (значение, id), диапазон значений — его отрезок;
+ * третий индекс — рейтинг по лайкам из FilmPopularityIndex, где «не меньше N лайков» — его начало.
+ * Планировщик выбирает ведущим самый узкий из заданных диапазонов: обходит их поочерёдно по одному элементу,
+ * и первый закончившийся оказывается самым коротким, а потрачено на выбор не больше, чем на его длину
+ * на каждый индекс. Остальные условия проверяются по атрибутам кандидатов.
+ * Если ведущий индекс упорядочен так же, как выдача, обход останавливается на limit-м совпадении;
+ * иначе совпадения собираются в кучу из limit лучших.
+ */
+@Component
+@Slf4j
+public class FilmFilterIndex implements MeterBinder {
+    private static final Comparator<Key> KEY_ORDER = Comparator
+            .comparingLong(Key::value)
+            .thenComparingInt(Key::filmId);
+    // Порядок выдачи: по ключу сортировки, при равенстве меньший id раньше
+    private static final Comparator<Hit> HIT_ORDER = Comparator
+            .comparingLong(Hit::key)
+            .thenComparingInt(Hit::filmId);
+
+    private final FilmPopularityIndex popularityIndex;
+    private final NavigableSet<Key> byReleaseDate = new ConcurrentSkipListSet<>(KEY_ORDER);
+    private final NavigableSet<Key> byDuration = new ConcurrentSkipListSet<>(KEY_ORDER);
+    // Текущие атрибуты фильма: по ним проверяются условия и удаляются старые ключи при обновлении
+    private final ConcurrentHashMap<Integer, Attributes> attributes = new ConcurrentHashMap<>();
+    // Сколько раз каждый индекс выбирался ведущим
+    private final Map<Driver, LongAdder> plans = new EnumMap<>(Driver.class);
+
+    public FilmFilterIndex(FilmPopularityIndex popularityIndex) {
+        this.popularityIndex = popularityIndex;
+        for (Driver driver : Driver.values()) {
+            plans.put(driver, new LongAdder());
+        }
+    }
+
+    /**
+     * Добавляет фильм в индексы или переносит его на новые значения атрибутов.
+     */
+    public void index(Film film) {
+        Attributes updated = new Attributes(film.getReleaseDate().toEpochDay(), film.getDuration());
+        attributes.compute(film.getId(), (id, previous) -> {
+            // Как и в рейтинге, новый ключ вставляется до удаления старого: читатель не потеряет фильм,
+            // а возможный дубль отсеется проверкой по attributes
+            byReleaseDate.add(new Key(updated.releaseDay(), id));
+            byDuration.add(new Key(updated.duration(), id));
+            if (previous != null) {
+                if (previous.releaseDay() != updated.releaseDay()) {
+                    byReleaseDate.remove(new Key(previous.releaseDay(), id));
+                }
+                if (previous.duration() != updated.duration()) {
+                    byDuration.remove(new Key(previous.duration(), id));
+                }
+            }
+            return updated;
+        });
+    }
+
+    /**
+     * Id до filter.limit() фильмов, подходящих под все условия, в порядке filter.sort().
+     */
+    public List<Integer> filter(FilmFilter filter) {
+        Condition condition = new Condition(filter);
+        Driver driver = plan(condition, filter.sort());
+        plans.get(driver).increment();
+        log.debug("Выборка фильмов: ведущий индекс {}", driver);
+
+        Iterator<Integer> candidates = scan(driver, condition);
+        Set<Integer> seen = new HashSet<>();
+        if (driver.sort == filter.sort()) {
+            // Кандидаты уже идут в порядке выдачи: первые limit совпадений и есть ответ
+            List<Integer> result = new ArrayList<>(filter.limit());
+            while (candidates.hasNext() && result.size() < filter.limit()) {
+                Integer filmId = candidates.next();
+                if (seen.add(filmId) && condition.test(filmId)) {
+                    result.add(filmId);
+                }
+            }
+            return result;
+        }
+        // Ключ снимается один раз при отборе: лайк во время выборки не нарушит порядок кучи.
+        // В корне кучи худший из отобранных
+        PriorityQueue<Hit> best = new PriorityQueue<>(filter.limit() + 1, HIT_ORDER.reversed());
+        while (candidates.hasNext()) {
+            Integer filmId = candidates.next();
+            if (seen.add(filmId) && condition.test(filmId)) {
+                best.add(new Hit(filmId, sortKey(filter.sort(), filmId)));
+                if (best.size() > filter.limit()) {
+                    best.poll();
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(HIT_ORDER);
+        return hits.stream().map(Hit::filmId).toList();
+    }
+
+    // Ведущим становится самый короткий из заданных диапазонов; без условий — индекс порядка выдачи
+    private Driver plan(Condition condition, FilmFilter.Sort sort) {
+        List<Driver> drivers = new ArrayList<>(Driver.values().length);
+        for (Driver driver : Driver.values()) {
+            if (condition.restricts(driver)) {
+                drivers.add(driver);
+            }
+        }
+        if (drivers.isEmpty()) {
+            return Driver.forSort(sort);
+        }
+        if (drivers.size() == 1) {
+            return drivers.get(0);
+        }
+        List<Iterator<Integer>> probes = new ArrayList<>(drivers.size());
+        for (Driver driver : drivers) {
+            probes.add(scan(driver, condition));
+        }
+        while (true) {
+            for (int i = 0; i < probes.size(); i++) {
+                if (!probes.get(i).hasNext()) {
+                    return drivers.get(i);
+                }
+                probes.get(i).next();
+            }
+        }
+    }
+
+    private Iterator<Integer> scan(Driver driver, Condition condition) {
+        return switch (driver) {
+            case LIKES -> popularityIndex.rankedAtLeast(condition.minLikes);
+            case RELEASE_DATE -> ids(range(byReleaseDate, condition.releasedFrom, condition.releasedTo));
+            case DURATION -> ids(range(byDuration, condition.minDuration, condition.maxDuration));
+        };
+    }
+
+    private static Iterator<Key> range(NavigableSet<Key> index, long from, long to) {
+        if (from > to) {
+            return Collections.emptyIterator();
+        }
+        return index.subSet(new Key(from, Integer.MIN_VALUE), true, new Key(to, Integer.MAX_VALUE), true).iterator();
+    }
+
+    private static Iterator<Integer> ids(Iterator<Key> keys) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                return keys.next().filmId();
+            }
+        };
+    }
+
+    // Ключ порядка выдачи по текущим значениям: меньше — раньше
+    private long sortKey(FilmFilter.Sort sort, int filmId) {
+        return switch (sort) {
+            case LIKES -> -popularityIndex.getLikes(filmId);
+            case RELEASE_DATE -> attributes.get(filmId).releaseDay();
+            case DURATION -> attributes.get(filmId).duration();
+        };
+    }
+
+    /**
+     * Публикует число фильмов в индексах и то, какой индекс сколько раз становился ведущим.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.films.filter.indexed", attributes, Map::size)
+                .description("Фильмы во вторичных индексах выборки")
+                .register(registry);
+        plans.forEach((driver, count) -> FunctionCounter.builder("filmorate.films.filter.plans", count, LongAdder::sum)
+                .description("Выборки фильмов по ведущему индексу")
+                .tag("driver", driver.sort.param())
+                .register(registry));
+    }
+
+    /**
+     * Индексы, которые могут вести выборку, и порядок, в котором они отдают фильмы.
+     */
+    private enum Driver {
+        LIKES(FilmFilter.Sort.LIKES),
+        RELEASE_DATE(FilmFilter.Sort.RELEASE_DATE),
+        DURATION(FilmFilter.Sort.DURATION);
+
+        private final FilmFilter.Sort sort;
+
+        Driver(FilmFilter.Sort sort) {
+            this.sort = sort;
+        }
+
+        static Driver forSort(FilmFilter.Sort sort) {
+            for (Driver driver : values()) {
+                if (driver.sort == sort) {
+                    return driver;
+                }
+            }
+            throw new IllegalArgumentException("Нет индекса для сортировки " + sort);
+        }
+    }
+
+    /**
+     * Условия выборки с раскрытыми границами: незаданная граница — крайнее значение.
+     * Проверка идёт по текущим атрибутам и лайкам, поэтому устаревший ключ индекса не даст лишнего фильма.
+     */
+    private final class Condition {
+        private final long releasedFrom;
+        private final long releasedTo;
+        private final long minDuration;
+        private final long maxDuration;
+        private final int minLikes;
+        private final boolean byReleaseDate;
+        private final boolean byDuration;
+
+        private Condition(FilmFilter filter) {
+            this.releasedFrom = filter.releasedFrom() == null ? Long.MIN_VALUE : filter.releasedFrom().toEpochDay();
+            this.releasedTo = filter.releasedTo() == null ? Long.MAX_VALUE : filter.releasedTo().toEpochDay();
+            this.minDuration = filter.minDuration() == null ? Long.MIN_VALUE : filter.minDuration();
+            this.maxDuration = filter.maxDuration() == null ? Long.MAX_VALUE : filter.maxDuration();
+            this.minLikes = filter.minLikes() == null ? 0 : filter.minLikes();
+            this.byReleaseDate = filter.releasedFrom() != null || filter.releasedTo() != null;
+            this.byDuration = filter.minDuration() != null || filter.maxDuration() != null;
+        }
+
+        boolean restricts(Driver driver) {
+            return switch (driver) {
+                case LIKES -> minLikes > 0;
+                case RELEASE_DATE -> byReleaseDate;
+                case DURATION -> byDuration;
+            };
+        }
+
+        boolean test(int filmId) {
+            Attributes film = attributes.get(filmId);
+            return film != null
+                    && film.releaseDay() >= releasedFrom && film.releaseDay() <= releasedTo
+                    && film.duration() >= minDuration && film.duration() <= maxDuration
+                    && (minLikes <= 0 || popularityIndex.getLikes(filmId) >= minLikes);
+        }
+    }
+
+    private record Attributes(long releaseDay, long duration) {
+    }
+
+    private record Key(long value, int filmId) {
+    }
+
+    private record Hit(int filmId, long key) {
+    }
+}
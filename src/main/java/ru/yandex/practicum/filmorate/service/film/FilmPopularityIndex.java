@@ -0,0 +1,158 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Инкрементально поддерживаемый рейтинг фильмов по количеству лайков.
+ * Счётчик фильма меняется при каждом лайке/снятии лайка, поэтому чтение
+ * первых count позиций стоит O(count) и не требует обхода всего каталога.
+ */
+@Component
+public class FilmPopularityIndex implements MeterBinder {
+    // Больше лайков — выше; при равенстве раньше идёт фильм с меньшим id
+    private static final Comparator<Entry> RANKING_ORDER = Comparator
+            .comparingInt(Entry::likes).reversed()
+            .thenComparingInt(Entry::filmId);
+
+    // Текущее количество лайков по id фильма
+    private final ConcurrentHashMap<Integer, Integer> likeCounts = new ConcurrentHashMap<>();
+    // Отсортированный рейтинг, по одной записи на фильм
+    private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(RANKING_ORDER);
+    // Сумма лайков по всем фильмам, чтобы метрика не обходила словарь
+    private final LongAdder totalLikes = new LongAdder();
+
+    /**
+     * Добавляет фильм в рейтинг с нулём лайков, если его там ещё нет.
+     */
+    public void register(int filmId) {
+        register(filmId, 0);
+    }
+
+    /**
+     * Добавляет фильм в рейтинг с заданным начальным числом лайков, если его там ещё нет.
+     */
+    public void register(int filmId, int likes) {
+        likeCounts.computeIfAbsent(filmId, id -> {
+            ranking.add(new Entry(id, likes));
+            totalLikes.add(likes);
+            return likes;
+        });
+    }
+
+    /**
+     * Учитывает новый лайк фильма.
+     */
+    public void increment(int filmId) {
+        adjust(filmId, 1);
+    }
+
+    /**
+     * Учитывает снятый лайк фильма.
+     */
+    public void decrement(int filmId) {
+        adjust(filmId, -1);
+    }
+
+    /**
+     * Учитывает сразу delta лайков фильма (отрицательное значение — снятые лайки).
+     * Используется пакетными операциями, чтобы обновлять рейтинг один раз на фильм.
+     */
+    public void add(int filmId, int delta) {
+        if (delta != 0) {
+            adjust(filmId, delta);
+        }
+    }
+
+    /**
+     * Возвращает текущее количество лайков фильма.
+     */
+    public int getLikes(int filmId) {
+        return likeCounts.getOrDefault(filmId, 0);
+    }
+
+    /**
+     * Возвращает id первых count фильмов рейтинга.
+     */
+    public List<Integer> top(int count) {
+        List<Integer> result = new ArrayList<>(Math.max(count, 0));
+        Set<Integer> seen = new HashSet<>();
+        for (Entry entry : ranking) {
+            if (result.size() >= count) {
+                break;
+            }
+            // Во время обновления фильм может кратковременно присутствовать дважды
+            if (seen.add(entry.filmId())) {
+                result.add(entry.filmId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Id фильмов с не меньше чем minLikes лайками в порядке рейтинга. Обход ленивый: читается ровно столько
+     * позиций, сколько взято. Во время обновления фильм может встретиться дважды.
+     */
+    public Iterator<Integer> rankedAtLeast(int minLikes) {
+        // Позиции с likes >= minLikes идут в рейтинге раньше первой позиции с minLikes - 1
+        Iterator<Entry> entries = ranking.headSet(new Entry(Integer.MIN_VALUE, minLikes - 1), false).iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                return entries.next().filmId();
+            }
+        };
+    }
+
+    private void adjust(int filmId, int delta) {
+        // compute блокирует только ключ этого фильма: обновления разных фильмов идут параллельно.
+        // Счётчик не обрезается снизу нулём — при гонке лайка и снятия лайка сумма дельт
+        // всё равно сойдётся к реальному размеру множества.
+        likeCounts.compute(filmId, (id, old) -> {
+            int current = old == null ? 0 : old;
+            int updated = current + delta;
+            // Сначала вставляем новую позицию, затем удаляем старую:
+            // параллельный читатель может увидеть фильм дважды, но не потеряет его
+            ranking.add(new Entry(id, updated));
+            if (old != null) {
+                ranking.remove(new Entry(id, current));
+            }
+            totalLikes.add(delta);
+            return updated;
+        });
+    }
+
+    /**
+     * Публикует число фильмов в рейтинге и общее число лайков.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.films.ranked", likeCounts, Map::size)
+                .description("Фильмы в рейтинге популярности")
+                .register(registry);
+        Gauge.builder("filmorate.likes.total", totalLikes, LongAdder::sum)
+                .description("Лайки по всем фильмам")
+                .register(registry);
+    }
+
+    private record Entry(int filmId, int likes) {
+    }
+}
@@ -0,0 +1,345 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.util.IntBitmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Полнотекстовый индекс фильмов по названию и описанию.
+ * Словарь терминов отсортирован, поэтому все термины с префиксом — это один отрезок словаря;
+ * для каждого термина хранятся битовые карты фильмов, где он встречается в названии и в описании.
+ * Запрос — пересечение по всем словам: фильм должен содержать каждое слово запроса хотя бы префиксом.
+ * Релевантность: совпадение в названии весит больше, чем в описании, слово целиком — больше, чем префикс;
+ * итог умножается на 1 + like-boost * ln(1 + лайки), чтобы при близкой релевантности выше были популярные.
+ * Индекс меняется при создании и обновлении фильма; при старте строится параллельно по пачкам фильмов.
+ */
+@Component
+public class FilmSearchIndex implements MeterBinder {
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int EXACT_BONUS = 2;
+    // Однобуквенные слова запроса ищутся только целиком: их префикс совпал бы с заметной частью словаря
+    private static final int MIN_PREFIX_LENGTH = 2;
+    // Сколько фильмов токенизирует одна задача при перестроении
+    private static final int REBUILD_CHUNK = 1000;
+
+    private final FilmPopularityIndex popularityIndex;
+    private final int maxPrefixTerms;
+    private final double likeBoost;
+    private final ForkJoinPool pool;
+    // Словарь и битовые карты не потокобезопасны: поиск читает под общей блокировкой, изменения — под исключительной
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    // Термины каждого фильма, чтобы при обновлении убрать его из старых списков
+    private final Map<Integer, FilmTerms> filmTerms = new ConcurrentHashMap<>();
+
+    public FilmSearchIndex(FilmPopularityIndex popularityIndex,
+                           @Value("${filmorate.search.max-prefix-terms:200}") int maxPrefixTerms,
+                           @Value("${filmorate.search.like-boost:0.1}") double likeBoost,
+                           @Value("${filmorate.search.parallelism:0}") int parallelism) {
+        this.popularityIndex = popularityIndex;
+        this.maxPrefixTerms = maxPrefixTerms;
+        this.likeBoost = likeBoost;
+        // 0 — по числу процессоров
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Добавляет фильм в индекс или заменяет его прежние термины новыми.
+     */
+    public void index(Film film) {
+        FilmTerms updated = FilmTerms.of(film);
+        lock.writeLock().lock();
+        try {
+            FilmTerms previous = filmTerms.put(film.getId(), updated);
+            if (previous != null) {
+                unlink(film.getId(), previous);
+            }
+            link(film.getId(), updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Перестроение: фильмы передаются в add по мере чтения из хранилища, токенизация идёт пачками параллельно,
+     * а finish дожидается пачек и сливает их в индекс.
+     */
+    public Rebuild rebuild() {
+        return new Rebuild();
+    }
+
+    /**
+     * Id до limit фильмов, содержащих все слова запроса, по убыванию релевантности.
+     * Сначала битовыми картами отбираются фильмы, подходящие под все слова: для слова — объединение карт его
+     * терминов, между словами — пересечение, начиная с самого узкого слова. Оценки считаются только для
+     * прошедших отбор, поэтому короткий префикс не заставляет обходить весь каталог по одному фильму.
+     */
+    public List<Integer> search(String query, int limit) {
+        Set<String> words = tokenize(query);
+        if (words.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Map<Integer, Integer> scores;
+        lock.readLock().lock();
+        try {
+            List<List<Match>> matches = new ArrayList<>(words.size());
+            for (String word : words) {
+                List<Match> wordMatches = match(word);
+                if (wordMatches.isEmpty()) {
+                    return List.of();
+                }
+                matches.add(wordMatches);
+            }
+            // Самое узкое слово первым: дальше пересекаются уже отобранные фильмы, а не полные списки
+            matches.sort(Comparator.comparingLong(FilmSearchIndex::postingsSize));
+            IntBitmap candidates = null;
+            for (List<Match> wordMatches : matches) {
+                candidates = films(wordMatches, candidates);
+                if (candidates.isEmpty()) {
+                    return List.of();
+                }
+            }
+            scores = score(candidates, matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return top(scores, limit);
+    }
+
+    // Термины словаря, подходящие под слово запроса: само слово и не больше maxPrefixTerms терминов с его префиксом
+    private List<Match> match(String word) {
+        NavigableMap<String, Postings> entries = word.length() < MIN_PREFIX_LENGTH
+                ? terms.subMap(word, true, word, true)
+                : terms.subMap(word, true, word + Character.MAX_VALUE, false);
+        List<Match> result = new ArrayList<>();
+        for (Map.Entry<String, Postings> entry : entries.entrySet()) {
+            if (result.size() == maxPrefixTerms) {
+                break;
+            }
+            result.add(new Match(entry.getValue(), entry.getKey().equals(word) ? EXACT_BONUS : 1));
+        }
+        return result;
+    }
+
+    private static long postingsSize(List<Match> wordMatches) {
+        long size = 0;
+        for (Match match : wordMatches) {
+            size += match.postings().name.cardinality() + match.postings().description.cardinality();
+        }
+        return size;
+    }
+
+    // Фильмы, где встречается хотя бы один из терминов слова; candidates — прошедшие предыдущие слова (null — все)
+    private static IntBitmap films(List<Match> wordMatches, IntBitmap candidates) {
+        IntBitmap result = new IntBitmap();
+        for (Match match : wordMatches) {
+            if (candidates == null) {
+                result.addAll(match.postings().name);
+                result.addAll(match.postings().description);
+            } else {
+                result.addAll(candidates.and(match.postings().name));
+                result.addAll(candidates.and(match.postings().description));
+            }
+        }
+        return result;
+    }
+
+    // Оценка слова — лучший из его терминов у фильма, оценка фильма — сумма по словам
+    private static Map<Integer, Integer> score(IntBitmap candidates, List<List<Match>> matches) {
+        Map<Integer, Integer> scores = new HashMap<>(candidates.cardinality() * 2);
+        for (List<Match> wordMatches : matches) {
+            Map<Integer, Integer> wordScores = new HashMap<>(candidates.cardinality() * 2);
+            for (Match match : wordMatches) {
+                int nameScore = NAME_WEIGHT * match.bonus();
+                int descriptionScore = DESCRIPTION_WEIGHT * match.bonus();
+                candidates.and(match.postings().name).forEach(filmId -> wordScores.merge(filmId, nameScore, Math::max));
+                candidates.and(match.postings().description)
+                        .forEach(filmId -> wordScores.merge(filmId, descriptionScore, Math::max));
+            }
+            wordScores.forEach((filmId, score) -> scores.merge(filmId, score, Integer::sum));
+        }
+        return scores;
+    }
+
+    private List<Integer> top(Map<Integer, Integer> scores, int limit) {
+        // Куча из limit лучших: в корне худший из отобранных
+        Comparator<Hit> order = Comparator.comparingDouble(Hit::rank)
+                .thenComparing(Hit::filmId, Comparator.reverseOrder());
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, order);
+        scores.forEach((filmId, score) -> {
+            best.add(new Hit(filmId, score * (1 + likeBoost * Math.log1p(popularityIndex.getLikes(filmId)))));
+            if (best.size() > limit) {
+                best.poll();
+            }
+        });
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(order.reversed());
+        return hits.stream().map(Hit::filmId).toList();
+    }
+
+    private void link(int filmId, FilmTerms film) {
+        film.name.forEach(term -> terms.computeIfAbsent(term, t -> new Postings()).name.add(filmId));
+        film.description.forEach(term -> terms.computeIfAbsent(term, t -> new Postings()).description.add(filmId));
+    }
+
+    private void unlink(int filmId, FilmTerms film) {
+        film.name.forEach(term -> {
+            Postings postings = terms.get(term);
+            postings.name.remove(filmId);
+            dropIfEmpty(term, postings);
+        });
+        film.description.forEach(term -> {
+            Postings postings = terms.get(term);
+            postings.description.remove(filmId);
+            dropIfEmpty(term, postings);
+        });
+    }
+
+    private void dropIfEmpty(String term, Postings postings) {
+        if (postings.name.isEmpty() && postings.description.isEmpty()) {
+            terms.remove(term);
+        }
+    }
+
+    /**
+     * Слова текста в нижнем регистре; ё приравнивается к е. Повторы убираются, порядок сохраняется.
+     */
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Публикует размер словаря и число проиндексированных фильмов.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.search.films", filmTerms, Map::size)
+                .description("Фильмы в поисковом индексе")
+                .register(registry);
+        Gauge.builder("filmorate.search.terms", this, index -> index.termCount())
+                .description("Термины в словаре поискового индекса")
+                .register(registry);
+    }
+
+    private int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Перестроение индекса по потоку фильмов. Не потокобезопасно: add вызывается из одного потока чтения.
+     */
+    public final class Rebuild {
+        private final List<CompletableFuture<Map<Integer, FilmTerms>>> chunks = new ArrayList<>();
+        private List<Film> chunk = new ArrayList<>(REBUILD_CHUNK);
+
+        private Rebuild() {
+        }
+
+        public void add(Film film) {
+            chunk.add(film);
+            if (chunk.size() == REBUILD_CHUNK) {
+                submit();
+            }
+        }
+
+        public void finish() {
+            submit();
+            for (CompletableFuture<Map<Integer, FilmTerms>> future : chunks) {
+                Map<Integer, FilmTerms> tokenized = future.join();
+                lock.writeLock().lock();
+                try {
+                    tokenized.forEach((filmId, film) -> {
+                        FilmTerms previous = filmTerms.put(filmId, film);
+                        if (previous != null) {
+                            unlink(filmId, previous);
+                        }
+                        link(filmId, film);
+                    });
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+
+        private void submit() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<Film> films = chunk;
+            chunk = new ArrayList<>(REBUILD_CHUNK);
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                Map<Integer, FilmTerms> tokenized = new HashMap<>(films.size() * 2);
+                films.forEach(film -> tokenized.put(film.getId(), FilmTerms.of(film)));
+                return tokenized;
+            }, pool));
+        }
+    }
+
+    /**
+     * Фильмы, в названии и описании которых встречается термин.
+     */
+    private static final class Postings {
+        private final IntBitmap name = new IntBitmap();
+        private final IntBitmap description = new IntBitmap();
+    }
+
+    private record FilmTerms(Set<String> name, Set<String> description) {
+        static FilmTerms of(Film film) {
+            return new FilmTerms(tokenize(film.getName()), tokenize(film.getDescription()));
+        }
+    }
+
+    // Термин, подошедший к слову запроса, и множитель за совпадение слова целиком
+    private record Match(Postings postings, int bonus) {
+    }
+
+    private record Hit(int filmId, double rank) {
+    }
+}
@@ -1,31 +1,133 @@
 package ru.yandex.practicum.filmorate.service.film;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.LikeImportResult;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ChangeFeed;
+import ru.yandex.practicum.filmorate.service.ResourceVersions;
+import ru.yandex.practicum.filmorate.service.SingleFlights;
+import ru.yandex.practicum.filmorate.service.user.UserService;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.IntAdjacency;
+import ru.yandex.practicum.filmorate.util.IntBitmap;
+import ru.yandex.practicum.filmorate.util.SingleFlight;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 // Сервис для работы с фильмами и их лайками.
 @Service
 @Slf4j
+@Timed(value = "filmorate.service", histogram = true)  // Таймер на каждую операцию, теги class и method
 public class FilmService {
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
-    // Хранение лайков: ключ — ID фильма, значение — множество ID пользователей, поставивших лайк
-    private final Map<Integer, Set<Integer>> likes = new HashMap<>();
+    private final LikeStorage likeStorage;
+    private final UserService userService;
+    // Лайки в памяти (копия likeStorage, загружается при старте):
+    // ключ — ID фильма, значение — множество ID пользователей, поставивших лайк
+    private final IntAdjacency likes = new IntAdjacency();
+    // Рейтинг фильмов по лайкам, обновляется вместе с likes
+    private final FilmPopularityIndex popularityIndex;
+    // Рейтинги по лайкам за последний час, сутки и неделю
+    private final TrendingIndex trendingIndex;
+    // Совместные лайки для рекомендаций, обновляются вместе с likes
+    private final CoLikeIndex coLikeIndex;
+    // Полнотекстовый индекс по названию и описанию
+    private final FilmSearchIndex searchIndex;
+    // Вторичные индексы по дате релиза и продолжительности для выборок с фильтрами
+    private final FilmFilterIndex filterIndex;
+    // Версии фильмов и рейтинга для ETag: поднимаются после каждого изменения
+    private final ResourceVersions versions;
+    // Лента изменений для подписчиков GET /feed
+    private final ChangeFeed feed;
+    // Сколько записей сохраняется одной пакетной операцией при массовой загрузке
+    private final int batchSize;
+    // Изменения лайков одного фильма сериализуются. ReentrantLock, а не synchronized: в SYNC-режиме
+    // под блокировкой идёт запрос к базе, а synchronized закрепил бы виртуальный поток за носителем
+    private final ReentrantLock[] likeLocks = new ReentrantLock[LIKE_LOCK_STRIPES];
+    // Одновременные одинаковые чтения фильма, популярных и трендов схлопываются в одно вычисление
+    private final SingleFlight<ReadKey, Film> filmReads;
+    private final SingleFlight<ReadKey, List<Film>> popularReads;
+    private final SingleFlight<TrendingKey, List<Film>> trendingReads;
 
     private static final LocalDate CINEMA_BIRTHDAY = LocalDate.of(1895, 12, 28);
+    // Максимальный размер страницы при постраничном чтении
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Число блокировок, между которыми распределяются фильмы при изменении лайков
+    private static final int LIKE_LOCK_STRIPES = 64;
 
-    public FilmService(FilmStorage filmStorage, UserStorage userStorage) {
+    public FilmService(FilmStorage filmStorage,
+                       UserStorage userStorage,
+                       LikeStorage likeStorage,
+                       UserService userService,
+                       FilmPopularityIndex popularityIndex,
+                       TrendingIndex trendingIndex,
+                       CoLikeIndex coLikeIndex,
+                       FilmSearchIndex searchIndex,
+                       FilmFilterIndex filterIndex,
+                       ResourceVersions versions,
+                       ChangeFeed feed,
+                       SingleFlights singleFlights,
+                       @Value("${filmorate.batch.size:500}") int batchSize) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
+        this.likeStorage = likeStorage;
+        this.userService = userService;
+        this.popularityIndex = popularityIndex;
+        this.trendingIndex = trendingIndex;
+        this.coLikeIndex = coLikeIndex;
+        this.searchIndex = searchIndex;
+        this.filterIndex = filterIndex;
+        this.versions = versions;
+        this.feed = feed;
+        this.batchSize = batchSize;
+        this.filmReads = singleFlights.create("films");
+        this.popularReads = singleFlights.create("popular");
+        this.trendingReads = singleFlights.create("trending");
+        for (int i = 0; i < likeLocks.length; i++) {
+            likeLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Загружает сохранённые лайки и заносит в рейтинг фильмы, уже лежащие в хранилище на момент старта.
+     */
+    @PostConstruct
+    void loadLikes() {
+        long started = System.nanoTime();
+        // Оба прохода потоковые: в памяти остаются только битовые карты лайков, а не копия таблиц
+        likeStorage.forEachLike(likes::add);
+        coLikeIndex.load(likes);
+        // Тот же проход по фильмам наполняет поисковый и вторичные индексы; токенизация идёт параллельно пачками
+        FilmSearchIndex.Rebuild searchRebuild = searchIndex.rebuild();
+        filmStorage.streamFilms(film -> {
+            popularityIndex.register(film.getId(), likes.size(film.getId()));
+            searchRebuild.add(film);
+            filterIndex.index(film);
+        });
+        searchRebuild.finish();
+        // В тренды попадают только лайки за самое длинное окно
+        Instant since = Instant.now().minus(TrendingWindow.WEEK.length());
+        likeStorage.forEachLikeSince(since, trendingIndex::likeAdded);
+        log.info("Загружено {} лайков за {} мс", likes.edgeCount(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
     }
 
     /**
@@ -33,18 +135,98 @@ public class FilmService {
      */
     public Film createFilm(Film film) {
         validateFilm(film);
-        return filmStorage.addFilm(film);
+        Film created = filmStorage.addFilm(film);
+        filmCreated(created);
+        versions.popularChanged();
+        return created;
     }
 
     /**
-     * Обновляет фильм (проверяет существование и валидирует).
+     * Пакетно создаёт фильмы. Каждая запись проверяется теми же правилами, что и в createFilm;
+     * ошибочные записи попадают в ошибки результата и не мешают сохранению остальных.
+     * null в последовательности означает запись, которую не удалось разобрать.
+     */
+    public BatchResult<Film> createFilms(Iterable<Film> films) {
+        BatchResult<Film> result = new BatchResult<>();
+        List<Film> chunk = new ArrayList<>(batchSize);
+        List<Integer> chunkIndexes = new ArrayList<>(batchSize);
+        int index = 0;
+        for (Film film : films) {
+            try {
+                if (film == null) {
+                    throw new ValidationException("Запись не распознана.");
+                }
+                validateFilm(film);
+                chunk.add(film);
+                chunkIndexes.add(index);
+            } catch (ValidationException e) {
+                result.addError(index, e.getMessage());
+            }
+            index++;
+            if (chunk.size() == batchSize) {
+                saveFilms(chunk, chunkIndexes, result);
+                chunk.clear();
+                chunkIndexes.clear();
+            }
+        }
+        saveFilms(chunk, chunkIndexes, result);
+        if (!result.getCreated().isEmpty()) {
+            versions.popularChanged();
+        }
+        log.info("Пакетная загрузка фильмов: создано {}, ошибок {}", result.getCreated().size(), result.getErrors().size());
+        return result;
+    }
+
+    /**
+     * Обновляет фильм с валидацией.
+     * Существование отдельно не проверяется: хранилище бросает NotFoundException, если UPDATE не задел ни одной строки.
      */
     public Film updateFilm(Film film) {
-        if (film.getId() == null || filmStorage.getFilmById(film.getId()) == null) {
+        if (film.getId() == null) {
             throw new NotFoundException("Film with id=" + film.getId() + " not found");
         }
         validateFilm(film);
-        return filmStorage.updateFilm(film);
+        Film updated = filmStorage.updateFilm(film);
+        searchIndex.index(updated);
+        filterIndex.index(updated);
+        versions.filmChanged(updated.getId());
+        versions.popularChanged();
+        feed.filmUpdated(updated);
+        return updated;
+    }
+
+    private void saveFilms(List<Film> chunk, List<Integer> chunkIndexes, BatchResult<Film> result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            for (Film created : filmStorage.addFilms(chunk)) {
+                filmCreated(created);
+                result.getCreated().add(created);
+            }
+        } catch (DataAccessException e) {
+            // Пакет откатился целиком — сохраняем его построчно, чтобы найти конкретные ошибочные строки
+            log.warn("Пакет фильмов отклонён базой, повторяем построчно: {}", e.getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                try {
+                    Film created = filmStorage.addFilm(chunk.get(i));
+                    filmCreated(created);
+                    result.getCreated().add(created);
+                } catch (DataAccessException rowError) {
+                    result.addError(chunkIndexes.get(i), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    // Новый фильм попадает в индексы и ленту; версия поднимается и для него: id мог уже запрашиваться
+    // до создания, и ETag, выданный тогда вместе с 404, не должен совпасть с тегом созданного фильма
+    private void filmCreated(Film created) {
+        popularityIndex.register(created.getId());
+        searchIndex.index(created);
+        filterIndex.index(created);
+        versions.filmChanged(created.getId());
+        feed.filmCreated(created);
     }
 
     /**
@@ -72,11 +254,58 @@ public class FilmService {
         return filmStorage.getAllFilms();
     }
 
+    /**
+     * Возвращает до filter.limit() фильмов, подходящих под диапазоны даты релиза и продолжительности
+     * и минимальное число лайков, в порядке filter.sort(). Выборку ведёт самый узкий из заданных индексов,
+     * из хранилища читаются только попавшие в ответ фильмы.
+     */
+    public List<Film> filterFilms(FilmFilter filter) {
+        validatePageLimit(filter.limit());
+        if (filter.releasedFrom() != null && filter.releasedTo() != null
+                && filter.releasedFrom().isAfter(filter.releasedTo())) {
+            throw new ValidationException("Начало диапазона дат релиза не может быть позже конца.");
+        }
+        if (filter.minDuration() != null && filter.maxDuration() != null
+                && filter.minDuration() > filter.maxDuration()) {
+            throw new ValidationException("Минимальная продолжительность не может быть больше максимальной.");
+        }
+        if (filter.minLikes() != null && filter.minLikes() < 0) {
+            throw new ValidationException("Минимальное число лайков не может быть отрицательным.");
+        }
+        return toFilms(filterIndex.filter(filter));
+    }
+
+    /**
+     * Возвращает страницу фильмов с id больше afterId, упорядоченных по id.
+     */
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        validatePageLimit(limit);
+        return filmStorage.getFilmsPage(afterId, limit);
+    }
+
+    /**
+     * Передаёт все фильмы по одному в порядке id, не собирая их в список.
+     */
+    public void streamFilms(Consumer<Film> consumer) {
+        filmStorage.streamFilms(consumer);
+    }
+
     /**
      * Возвращает фильм по ID.
      */
     public Film getFilmById(int id) {
-        return filmStorage.getFilmById(id);
+        return filmReads.execute(new ReadKey(id, versions.filmVersion(id)), () -> filmStorage.getFilmById(id));
+    }
+
+    /**
+     * Возвращает фильмы с переданными id одним запросом к хранилищу, в порядке запроса и без повторов.
+     * Несуществующие id пропускаются: вызывающий сам видит, каких фильмов нет в ответе.
+     */
+    public List<Film> getFilmsByIds(List<Integer> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_PAGE_SIZE) {
+            throw new ValidationException("Список фильмов должен содержать от 1 до " + MAX_PAGE_SIZE + " id.");
+        }
+        return toFilms(new LinkedHashSet<>(ids));
     }
 
     /**
@@ -84,9 +313,60 @@ public class FilmService {
      */
     public void addLike(int filmId, int userId) {
         log.info("Пользователь {} ставит лайк фильму {}", userId, filmId);
-        filmStorage.getFilmById(filmId);
-        userStorage.getUserById(userId);
-        likes.computeIfAbsent(filmId, k -> new HashSet<>()).add(userId);
+        // Повторный лайк: пара уже в памяти, значит фильм и пользователь существуют — проверки не нужны
+        if (likes.contains(filmId, userId)) {
+            return;
+        }
+        requireFilm(filmId);
+        requireUser(userId);
+        // Изменения одного фильма сериализуем, чтобы порядок записей в хранилище совпадал с порядком в памяти.
+        // Сначала пишет хранилище: если запись не удалась, индексы в памяти не меняются и повтор её повторит
+        ReentrantLock lock = likeLock(filmId);
+        lock.lock();
+        try {
+            if (!likes.contains(filmId, userId)) {
+                likeStorage.addLike(filmId, userId);
+                likes.add(filmId, userId);
+                popularityIndex.increment(filmId);
+                trendingIndex.likeAdded(filmId, userId, System.currentTimeMillis());
+                coLikeIndex.likeAdded(filmId, userId);
+                versions.popularChanged();
+                feed.likeAdded(filmId, userId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Массово применяет лайки, например при переносе оценок из других систем.
+     * Пары обрабатываются пакетами: существование фильмов и пользователей проверяется одним запросом
+     * на пакет, повторы отбрасываются, а рейтинг обновляется один раз на фильм, а не на каждую пару.
+     * null в последовательности означает запись, которую не удалось разобрать.
+     */
+    public LikeImportResult addLikes(Iterable<FilmLike> pairs) {
+        LikeImportResult result = new LikeImportResult();
+        List<FilmLike> chunk = new ArrayList<>(batchSize);
+        List<Integer> chunkIndexes = new ArrayList<>(batchSize);
+        int index = 0;
+        for (FilmLike pair : pairs) {
+            if (pair == null) {
+                result.addRejected(index, "Запись не распознана.");
+            } else {
+                chunk.add(pair);
+                chunkIndexes.add(index);
+            }
+            index++;
+            if (chunk.size() == batchSize) {
+                applyLikes(chunk, chunkIndexes, result);
+                chunk.clear();
+                chunkIndexes.clear();
+            }
+        }
+        applyLikes(chunk, chunkIndexes, result);
+        log.info("Массовая загрузка лайков: добавлено {}, повторов {}, отклонено {}",
+                result.getAdded(), result.getDuplicates(), result.getRejected().size());
+        return result;
     }
 
     /**
@@ -94,21 +374,222 @@ public class FilmService {
      */
     public void removeLike(int filmId, int userId) {
         log.info("Пользователь {} убирает лайк с фильма {}", userId, filmId);
-        filmStorage.getFilmById(filmId);
-        userStorage.getUserById(userId);
-        Optional.ofNullable(likes.get(filmId)).ifPresent(set -> set.remove(userId));
+        ReentrantLock lock = likeLock(filmId);
+        lock.lock();
+        try {
+            if (likes.contains(filmId, userId)) {
+                likeStorage.removeLike(filmId, userId);
+                likes.remove(filmId, userId);
+                popularityIndex.decrement(filmId);
+                trendingIndex.likeRemoved(filmId, userId);
+                coLikeIndex.likeRemoved(filmId, userId);
+                versions.popularChanged();
+                feed.likeRemoved(filmId, userId);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Лайка не было: снимать нечего, но на несуществующий фильм или пользователя отвечаем 404
+        requireFilm(filmId);
+        requireUser(userId);
+    }
+
+    private void applyLikes(List<FilmLike> chunk, List<Integer> chunkIndexes, LikeImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<Integer> filmIds = new HashSet<>();
+        Set<Integer> userIds = new HashSet<>();
+        for (FilmLike pair : chunk) {
+            filmIds.add(pair.getFilmId());
+            userIds.add(pair.getUserId());
+        }
+        // Ссылочная целостность проверяется по множествам: по одному запросу на фильмы и на пользователей
+        Set<Integer> existingFilms = filmStorage.getExistingFilmIds(filmIds);
+        Set<Integer> existingUsers = userStorage.getExistingUserIds(userIds);
+
+        // Группируем подтверждённые пары по фильму, повторы внутри пакета отбрасываем.
+        // Лайк без времени считается старым: перенесённые оценки не должны выглядеть свежими в трендах
+        Instant now = Instant.now();
+        Map<Integer, Map<Integer, Instant>> usersByFilm = new LinkedHashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            FilmLike pair = chunk.get(i);
+            Instant likedAt = pair.getLikedAt() == null ? FilmLike.UNKNOWN_TIME : pair.getLikedAt();
+            if (!existingFilms.contains(pair.getFilmId())) {
+                result.addRejected(chunkIndexes.get(i), "Film with id=" + pair.getFilmId() + " not found");
+            } else if (!existingUsers.contains(pair.getUserId())) {
+                result.addRejected(chunkIndexes.get(i), "User with id=" + pair.getUserId() + " not found");
+            } else if (likedAt.isAfter(now)) {
+                result.addRejected(chunkIndexes.get(i), "Время лайка не может быть в будущем.");
+            } else if (usersByFilm.computeIfAbsent(pair.getFilmId(), k -> new LinkedHashMap<>())
+                    .putIfAbsent(pair.getUserId(), likedAt) != null) {
+                result.setDuplicates(result.getDuplicates() + 1);
+            }
+        }
+
+        usersByFilm.forEach((filmId, users) -> {
+            List<FilmLike> added = new ArrayList<>(users.size());
+            ReentrantLock lock = likeLock(filmId);
+            lock.lock();
+            try {
+                users.forEach((userId, likedAt) -> {
+                    if (!likes.contains(filmId, userId)) {
+                        added.add(new FilmLike(filmId, userId, likedAt));
+                    }
+                });
+                if (!added.isEmpty()) {
+                    // Как и у одиночного лайка, память меняется только после успешной записи пачки
+                    likeStorage.addLikes(added);
+                    for (FilmLike like : added) {
+                        likes.add(filmId, like.getUserId());
+                        trendingIndex.likeAdded(filmId, like.getUserId(), like.getLikedAt().toEpochMilli());
+                        coLikeIndex.likeAdded(filmId, like.getUserId());
+                        feed.likeAdded(filmId, like.getUserId());
+                    }
+                    popularityIndex.add(filmId, added.size());
+                    versions.popularChanged();
+                }
+            } finally {
+                lock.unlock();
+            }
+            result.setAdded(result.getAdded() + added.size());
+            result.setDuplicates(result.getDuplicates() + users.size() - added.size());
+        });
     }
 
     /**
      * Возвращает список первых count фильмов, отсортированных по количеству лайков (по убыванию).
+     * Порядок берётся из рейтинга, из хранилища читаются только попавшие в топ фильмы.
      */
     public List<Film> getPopular(int count) {
         log.info("Получение {} самых популярных фильмов", count);
-        return filmStorage.getAllFilms().stream()
-                .sorted(Comparator.comparingInt((Film f) ->
-                        likes.getOrDefault(f.getId(), Collections.emptySet()).size()
-                ).reversed())
-                .limit(count)
-                .collect(Collectors.toList());
+        // Версия рейтинга читается до вычисления: результат под ключом не старше этой версии
+        return popularReads.execute(new ReadKey(count, versions.popularVersion()),
+                () -> List.copyOf(toFilms(popularityIndex.top(count))));
+    }
+
+    /**
+     * Возвращает до count фильмов с наибольшим числом лайков за окно window (1h, 24h или 7d).
+     * Порядок берётся из рейтинга окна, из хранилища читаются только попавшие в него фильмы.
+     */
+    public List<Film> getTrending(String window, int count) {
+        TrendingWindow trendingWindow = TrendingWindow.fromParam(window);
+        log.info("Получение {} фильмов в тренде за {}", count, trendingWindow.param());
+        // Тренды стареют и без лайков, по мере выпадения корзин; запомненный результат отстаёт не больше чем на ttl
+        return trendingReads.execute(new TrendingKey(trendingWindow, count, versions.popularVersion()),
+                () -> List.copyOf(toFilms(trendingIndex.top(trendingWindow, count))));
+    }
+
+    /**
+     * Ищет фильмы, в названии или описании которых есть все слова запроса (можно началом слова),
+     * и возвращает до limit самых релевантных.
+     */
+    public List<Film> search(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не может быть пустым.");
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер выдачи должен быть от 1 до " + MAX_PAGE_SIZE + ".");
+        }
+        log.info("Поиск фильмов по запросу «{}»", query);
+        return toFilms(searchIndex.search(query, limit));
+    }
+
+    /**
+     * Возвращает тех из пользователей userIds, кто лайкнул фильм filmId, по возрастанию id.
+     * Список сводится в битовую карту и пересекается с лайками фильма.
+     */
+    public List<User> getLikedBy(int filmId, Collection<Integer> userIds) {
+        if (userIds.isEmpty() || userIds.size() > MAX_PAGE_SIZE) {
+            throw new ValidationException("Список пользователей должен содержать от 1 до " + MAX_PAGE_SIZE + " id.");
+        }
+        requireFilm(filmId);
+        IntBitmap candidates = new IntBitmap();
+        userIds.forEach(candidates::add);
+        return toUsers(likes.intersect(filmId, candidates));
+    }
+
+    /**
+     * Возвращает друзей пользователя userId, лайкнувших фильм filmId, по возрастанию id.
+     * Пересекаются битовые карты друзей и лайков по 64 id за операцию, поэтому запрос остаётся
+     * дешёвым и для пользователей с сотнями тысяч друзей.
+     */
+    public List<User> getFriendsWhoLiked(int filmId, int userId) {
+        requireFilm(filmId);
+        return toUsers(likes.intersect(filmId, userService.getFriendIds(userId)));
+    }
+
+    /**
+     * Лайки в памяти: ключ — ID фильма, значения — ID поставивших лайк пользователей.
+     * Используется фоновыми расчётами пакета, которым нужны все лайки сразу; изменять их можно только через сервис.
+     */
+    IntAdjacency likesGraph() {
+        return likes;
+    }
+
+    /**
+     * Фильмы в порядке filmIds, прочитанные из хранилища одним запросом; отсутствующие id пропускаются.
+     */
+    List<Film> toFilms(Collection<Integer> filmIds) {
+        Map<Integer, Film> found = filmStorage.getFilmsByIds(filmIds);
+        List<Film> films = new ArrayList<>(found.size());
+        for (Integer filmId : filmIds) {
+            Film film = found.get(filmId);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        return films;
+    }
+
+    private List<User> toUsers(int[] userIds) {
+        List<Integer> ids = Arrays.stream(userIds).boxed().toList();
+        Map<Integer, User> found = userStorage.getUsersByIds(ids);
+        List<User> users = new ArrayList<>(userIds.length);
+        for (Integer userId : ids) {
+            User user = found.get(userId);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    private void validatePageLimit(int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE + ".");
+        }
+    }
+
+    private ReentrantLock likeLock(int filmId) {
+        return likeLocks[Math.floorMod(filmId, LIKE_LOCK_STRIPES)];
+    }
+
+    /**
+     * Есть ли фильм с таким id. Строка не читается: хранилище отвечает из кэша или одним EXISTS.
+     */
+    public boolean filmExists(int filmId) {
+        return filmStorage.filmExists(filmId);
+    }
+
+    // Проверки существования не читают строки целиком: хранилище отвечает из кэша или одним EXISTS
+    private void requireFilm(int filmId) {
+        if (!filmStorage.filmExists(filmId)) {
+            throw new NotFoundException("Film with id=" + filmId + " not found");
+        }
+    }
+
+    private void requireUser(int userId) {
+        if (!userStorage.userExists(userId)) {
+            throw new NotFoundException("User with id=" + userId + " not found");
+        }
+    }
+
+    // Ключ чтения: id (или размер выдачи) и версия данных на момент запроса
+    private record ReadKey(int id, long version) {
+    }
+
+    private record TrendingKey(TrendingWindow window, int count, long version) {
     }
 }
@@ -0,0 +1,225 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.ResourceVersions;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Заранее посчитанные списки популярных для частых значений count (filmorate.popular.snapshot-counts).
+ * Снимок неизменяем: версия рейтинга, из которой он построен, и готовый JSON для каждого count.
+ * Новый снимок строится целиком в стороне — один проход по рейтингу до наибольшего count и одно чтение
+ * фильмов из хранилища на все count — и подменяет старый одной записью volatile-ссылки,
+ * так что читатель всегда видит согласованные версию и тела.
+ * Фоновая задача раз в check-interval смотрит, сколько раз рейтинг менялся со снимка: после
+ * refresh-threshold изменений снимок перестраивается сразу, после меньшего числа — когда ему исполнится
+ * max-staleness. Чтение снимок не перестраивает: если фоновая задача отстала, запрос отдаёт прежний снимок
+ * и ставит перестроение в очередь тому же фоновому потоку, так что отставание ограничено max-staleness
+ * и временем одного перестроения.
+ */
+@Component
+@Slf4j
+public class PopularSnapshots implements MeterBinder {
+    private final FilmService filmService;
+    private final ResourceVersions versions;
+    private final ObjectMapper mapper;
+    private final Set<Integer> counts;
+    private final int maxCount;
+    private final long maxStalenessNanos;
+    private final long refreshThreshold;
+    private final Duration checkInterval;
+    private final ScheduledExecutorService refresher;
+    // Перестраивает снимок один поток за раз: фоновая задача или явный refresh()
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    // Перестроение по просьбе читателей уже в очереди: отставшие чтения ставят одну задачу на всех
+    private final AtomicBoolean refreshRequested = new AtomicBoolean();
+    private final LongAdder refreshes = new LongAdder();
+    private volatile Snapshot snapshot;
+
+    public PopularSnapshots(FilmService filmService,
+                            ResourceVersions versions,
+                            ObjectMapper mapper,
+                            @Value("${filmorate.popular.snapshot-counts:10,20,50,100}") Set<Integer> counts,
+                            @Value("${filmorate.popular.max-staleness:1s}") Duration maxStaleness,
+                            @Value("${filmorate.popular.refresh-threshold:100}") long refreshThreshold,
+                            @Value("${filmorate.popular.check-interval:100ms}") Duration checkInterval) {
+        this.filmService = filmService;
+        this.versions = versions;
+        this.mapper = mapper;
+        this.counts = Set.copyOf(counts);
+        this.maxCount = counts.stream().mapToInt(Integer::intValue).max().orElse(0);
+        this.maxStalenessNanos = maxStaleness.toNanos();
+        this.refreshThreshold = refreshThreshold;
+        this.checkInterval = checkInterval;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "popular-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Фоновая задача запускается только после первого снимка: до этого ей нечего проверять
+    @PostConstruct
+    void init() {
+        refresh();
+        long intervalMs = checkInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Текущий снимок; не перестраивается на потоке запроса. Если он отстал от рейтинга дольше max-staleness,
+     * перестроение ставится в очередь фоновому потоку, а этот запрос получает прежний снимок.
+     */
+    public Snapshot current() {
+        Snapshot current = snapshot;
+        if (isPending(current) && System.nanoTime() - current.builtAt() >= maxStalenessNanos) {
+            requestRefresh();
+        }
+        return current;
+    }
+
+    /**
+     * Перестраивает снимок, если рейтинг менялся не меньше refresh-threshold раз или снимок старше max-staleness.
+     */
+    public void refreshIfDue() {
+        Snapshot current = snapshot;
+        long pending = versions.popularChangeCount() - current.changes();
+        if (pending == 0) {
+            return;
+        }
+        if (pending >= refreshThreshold || System.nanoTime() - current.builtAt() >= maxStalenessNanos) {
+            refreshIfStale();
+        }
+    }
+
+    /**
+     * Строит снимок по текущему рейтингу и подменяет им прежний.
+     */
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            snapshot = build();
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void refreshIfStale() {
+        refreshLock.lock();
+        try {
+            // Пока ждали блокировку, снимок мог перестроить другой поток
+            if (isPending(snapshot)) {
+                snapshot = build();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void requestRefresh() {
+        if (!refreshRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                // Флаг снимается до перестроения: изменение во время него поставит следующее
+                refreshRequested.set(false);
+                refreshQuietly();
+            });
+        } catch (RejectedExecutionException e) {
+            // Приложение останавливается, перестраивать незачем
+            refreshRequested.set(false);
+        }
+    }
+
+    private boolean isPending(Snapshot current) {
+        return versions.popularChangeCount() != current.changes();
+    }
+
+    private Snapshot build() {
+        long started = System.nanoTime();
+        // Версия и счётчик читаются до рейтинга: снимок не старше того, что в них записано
+        long changes = versions.popularChangeCount();
+        long version = versions.popularVersion();
+        List<Film> top = filmService.getPopular(maxCount);
+        Map<Integer, byte[]> bodies = new HashMap<>(counts.size() * 2);
+        try {
+            for (int count : counts) {
+                bodies.put(count, mapper.writeValueAsBytes(top.subList(0, Math.min(count, top.size()))));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сериализовать популярные фильмы", e);
+        }
+        refreshes.increment();
+        log.debug("Снимок популярных построен за {} мкс",
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+        return new Snapshot(version, changes, System.nanoTime(), Map.copyOf(bodies));
+    }
+
+    private void refreshQuietly() {
+        try {
+            refreshIfDue();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось обновить снимок популярных", e);
+        }
+    }
+
+    /**
+     * Публикует возраст текущего снимка и число перестроений.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.popular.snapshot.age", this, snapshots -> snapshots.ageMillis())
+                .description("Возраст снимка популярных, мс")
+                .baseUnit("milliseconds")
+                .register(registry);
+        FunctionCounter.builder("filmorate.popular.snapshot.refreshes", refreshes, LongAdder::sum)
+                .description("Перестроения снимка популярных")
+                .register(registry);
+    }
+
+    private double ageMillis() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - current.builtAt());
+    }
+
+    /**
+     * Неизменяемый снимок: версия рейтинга для ETag, счётчик изменений на момент построения,
+     * момент построения (System.nanoTime) и готовый JSON по count.
+     */
+    public record Snapshot(long version, long changes, long builtAt, Map<Integer, byte[]> bodies) {
+        /**
+         * Готовый JSON для count или null, если count не входит в снимок.
+         */
+        public byte[] json(int count) {
+            return bodies.get(count);
+        }
+    }
+}
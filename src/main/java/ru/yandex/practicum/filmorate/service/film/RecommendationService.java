@@ -0,0 +1,257 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.IntAdjacency;
+import ru.yandex.practicum.filmorate.util.IntBitmap;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Рекомендации фильмов по совместным лайкам: пользователю предлагаются фильмы, которые чаще всего
+ * лайкают вместе с его фильмами.
+ * Рекомендации хранятся в готовой таблице, поэтому запрос только читает её. Лайки попадают в CoLikeIndex
+ * сразу, а пересчёт ставится в очередь фоновому потоку и затрагивает только пользователей, чьи оценки
+ * могли измениться: тех, кто поменял лайки, и лайкнувших фильмы с изменившимися счётчиками.
+ * Всех пользователей пересчитывает только старт. Расчёт идёт параллельно по диапазонам пользователей в ForkJoinPool.
+ * Один пересчёт берёт не больше maxRefreshUsers затронутых пользователей, остальные ждут следующего:
+ * лайк к популярным фильмам затрагивает многих, и без предела такой всплеск задержал бы все прочие обновления.
+ */
+@Service
+@Slf4j
+@Timed(value = "filmorate.service", histogram = true)  // Таймер на каждую операцию, теги class и method
+public class RecommendationService {
+    // Минимум пользователей в одной задаче без дальнейшего деления
+    private static final int MIN_USERS_PER_TASK = 256;
+    // На сколько задач в расчёте на поток делится пересчёт: рабочие массивы создаются один раз на задачу
+    private static final int TASKS_PER_THREAD = 4;
+    private static final int[] NO_RECOMMENDATIONS = new int[0];
+
+    private final FilmService filmService;
+    private final UserStorage userStorage;
+    private final CoLikeIndex index;
+    private final int size;
+    private final int maxFilmLikers;
+    private final int maxRefreshUsers;
+    private final ForkJoinPool pool;
+    private final ExecutorService refresher;
+    // Готовые рекомендации: id пользователя → id фильмов по убыванию оценки
+    private final Map<Integer, int[]> table = new ConcurrentHashMap<>();
+    // Обновления не пересекаются: фоновое и вызванное вручную выполняются по очереди
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    // Затронутые изменениями пользователи, которых ещё не пересчитали; меняется под refreshLock
+    private IntBitmap pending = new IntBitmap();
+    // Пересчёт уже в очереди: изменения, пришедшие до его начала, он заберёт сам
+    private final AtomicBoolean refreshRequested = new AtomicBoolean();
+
+    public RecommendationService(FilmService filmService,
+                                 UserStorage userStorage,
+                                 CoLikeIndex index,
+                                 @Value("${filmorate.recommendations.size:20}") int size,
+                                 @Value("${filmorate.recommendations.max-film-likers:10000}") int maxFilmLikers,
+                                 @Value("${filmorate.recommendations.max-refresh-users:20000}") int maxRefreshUsers,
+                                 @Value("${filmorate.recommendations.parallelism:0}") int parallelism) {
+        this.filmService = filmService;
+        this.userStorage = userStorage;
+        this.index = index;
+        this.size = size;
+        this.maxFilmLikers = maxFilmLikers;
+        this.maxRefreshUsers = maxRefreshUsers;
+        // 0 — по числу процессоров
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.refresher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "recommendations-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Счётчики к этому моменту уже построены FilmService; полный расчёт идёт в фоне, не задерживая старт
+    @PostConstruct
+    void start() {
+        index.onChange(this::requestRefresh);
+        refresher.execute(() -> {
+            try {
+                refreshAll();
+            } catch (RuntimeException e) {
+                log.warn("Не удалось рассчитать рекомендации", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    /**
+     * Возвращает до count рекомендованных пользователю фильмов из последнего рассчитанного состояния.
+     */
+    public List<Film> getRecommendations(int userId, int count) {
+        if (count <= 0) {
+            throw new ValidationException("Количество рекомендаций должно быть положительным.");
+        }
+        if (!userStorage.userExists(userId)) {
+            throw new NotFoundException("User with id=" + userId + " not found");
+        }
+        int[] films = table.getOrDefault(userId, NO_RECOMMENDATIONS);
+        // Фильмы рекомендации читаются из хранилища одним запросом
+        return filmService.toFilms(Arrays.stream(films, 0, Math.min(count, films.length)).boxed().toList());
+    }
+
+    /**
+     * Пересчитывает рекомендации пользователей, затронутых изменениями лайков с прошлого пересчёта,
+     * но не больше maxRefreshUsers за вызов; если затронутых больше, ставит в очередь следующий пересчёт.
+     */
+    public void refresh() {
+        boolean more;
+        refreshLock.lock();
+        try {
+            CoLikeIndex.Changes changes = index.drainChanges();
+            if (!changes.isEmpty()) {
+                pending.addAll(affectedUsers(changes));
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+            int[] users = takePending();
+            recommend(users);
+            more = !pending.isEmpty();
+            log.debug("Рекомендации пересчитаны для {} пользователей, в очереди {}",
+                    users.length, pending.cardinality());
+        } finally {
+            refreshLock.unlock();
+        }
+        if (more) {
+            requestRefresh();
+        }
+    }
+
+    /**
+     * Пересчитывает рекомендации всех пользователей с лайками.
+     */
+    public void refreshAll() {
+        refreshLock.lock();
+        try {
+            // Полный расчёт учитывает и накопленные изменения
+            index.drainChanges();
+            pending = new IntBitmap();
+            int[] users = index.users();
+            recommend(users);
+            // Пользователи без лайков в расчёт не попадают — убираем их рекомендации
+            IntBitmap current = IntBitmap.of(users);
+            table.keySet().removeIf(userId -> !current.contains(userId));
+            log.info("Рекомендации рассчитаны для {} пользователей", users.length);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void requestRefresh() {
+        if (!refreshRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                // Флаг снимается до пересчёта: изменение во время него поставит следующий
+                refreshRequested.set(false);
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    log.warn("Не удалось обновить рекомендации", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Приложение останавливается, пересчитывать незачем
+            refreshRequested.set(false);
+        }
+    }
+
+    /**
+     * Оценки пользователя меняются, если изменились его лайки или счётчики фильма, который он лайкнул.
+     * Лайкнувшие фильм больше чем maxFilmLikers пользователей его строку не учитывают и не затрагиваются;
+     * фильм ровно на пороге ещё включается — его лайкнувшие только что перестали или начали её учитывать.
+     */
+    private IntBitmap affectedUsers(CoLikeIndex.Changes changes) {
+        IntAdjacency likes = filmService.likesGraph();
+        IntBitmap users = changes.users().copy();
+        changes.films().forEach(filmId -> {
+            if (likes.size(filmId) <= maxFilmLikers + 1) {
+                users.addAll(likes.copy(filmId));
+            }
+        });
+        return users;
+    }
+
+    // Первые maxRefreshUsers ожидающих пользователей, убранные из очереди
+    private int[] takePending() {
+        int[] all = pending.toArray();
+        int[] users = all.length <= maxRefreshUsers ? all : Arrays.copyOf(all, maxRefreshUsers);
+        for (int userId : users) {
+            pending.remove(userId);
+        }
+        return users;
+    }
+
+    private void recommend(int[] users) {
+        int usersPerTask = Math.max(MIN_USERS_PER_TASK, users.length / (pool.getParallelism() * TASKS_PER_THREAD));
+        pool.invoke(new RecommendTask(users, 0, users.length, usersPerTask));
+    }
+
+    /**
+     * Считает рекомендации для users[from .. to), деля диапазон пополам, пока он больше usersPerTask.
+     */
+    private class RecommendTask extends RecursiveAction {
+        private final int[] users;
+        private final int from;
+        private final int to;
+        private final int usersPerTask;
+
+        RecommendTask(int[] users, int from, int to, int usersPerTask) {
+            this.users = users;
+            this.from = from;
+            this.to = to;
+            this.usersPerTask = usersPerTask;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > usersPerTask) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RecommendTask(users, from, middle, usersPerTask),
+                        new RecommendTask(users, middle, to, usersPerTask));
+                return;
+            }
+            CoLikeIndex.CoLikes scratch = index.newScratch();
+            for (int i = from; i < to; i++) {
+                int userId = users[i];
+                int[] films = index.recommend(userId, size, maxFilmLikers, scratch);
+                // Пользователь снял все лайки или рекомендовать нечего — строка таблицы не нужна
+                if (films.length == 0) {
+                    table.remove(userId);
+                } else {
+                    table.put(userId, films);
+                }
+            }
+        }
+    }
+}
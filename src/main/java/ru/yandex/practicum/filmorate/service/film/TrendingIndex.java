@@ -0,0 +1,263 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рейтинги фильмов по лайкам за последний час, сутки и неделю.
+ * Для каждого окна у фильма кольцевой буфер корзин (TrendingWindow.bucket) и их сумма: лайк увеличивает
+ * текущую корзину за O(1), а корзины, выпавшие из окна, обнуляются при следующем обращении к фильму
+ * или на ежеминутном тике. Тик обходит только фильмы, у которых в окне есть лайки, а не журнал лайков.
+ * Рейтинг каждого окна поддерживается инкрементально, как в FilmPopularityIndex.
+ * Время каждого лайка, попадающего в самое длинное окно, хранится по паре «фильм, пользователь»:
+ * снятый лайк вычитается ровно из той корзины, куда был добавлен. Лайк, которого нет среди запомненных,
+ * старше всех окон и на тренды не влияет. Запомненные времена, выпавшие из окон, удаляет тот же тик.
+ */
+@Component
+@Slf4j
+public class TrendingIndex implements MeterBinder {
+    // Больше лайков в окне — выше; при равенстве раньше идёт фильм с меньшим id
+    private static final Comparator<Entry> RANKING_ORDER = Comparator
+            .comparingInt(Entry::likes).reversed()
+            .thenComparingInt(Entry::filmId);
+    private static final long TICK_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Map<TrendingWindow, Window> windows = new EnumMap<>(TrendingWindow.class);
+    // Пара (filmId, userId) → время лайка в миллисекундах, только для лайков внутри самого длинного окна
+    private final ConcurrentHashMap<Long, Long> likeTimes = new ConcurrentHashMap<>();
+    private final long longestWindowMillis;
+    private final ScheduledExecutorService ticker;
+
+    public TrendingIndex() {
+        for (TrendingWindow window : TrendingWindow.values()) {
+            windows.put(window, new Window(window));
+        }
+        this.longestWindowMillis = Arrays.stream(TrendingWindow.values())
+                .mapToLong(window -> window.length().toMillis())
+                .max()
+                .orElseThrow();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "trending-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::expireQuietly, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Учитывает лайк userId фильму filmId, поставленный в момент likedAtMillis.
+     * Лайки старше самого длинного окна пропускаются. Изменения одной пары не должны идти параллельно.
+     */
+    public void likeAdded(int filmId, int userId, long likedAtMillis) {
+        long now = System.currentTimeMillis();
+        if (likedAtMillis < now - longestWindowMillis) {
+            return;
+        }
+        likeTimes.put(pairKey(filmId, userId), likedAtMillis);
+        for (Window window : windows.values()) {
+            window.add(filmId, now, likedAtMillis);
+        }
+    }
+
+    /**
+     * Учитывает снятие лайка userId с фильма filmId: вычитает его из корзины, где он был учтён.
+     */
+    public void likeRemoved(int filmId, int userId) {
+        Long likedAt = likeTimes.remove(pairKey(filmId, userId));
+        if (likedAt == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Window window : windows.values()) {
+            window.remove(filmId, now, likedAt);
+        }
+    }
+
+    /**
+     * Id первых count фильмов по лайкам за окно window; фильмы без лайков в окне не попадают.
+     */
+    public List<Integer> top(TrendingWindow window, int count) {
+        List<Integer> result = new ArrayList<>(Math.max(count, 0));
+        Set<Integer> seen = new HashSet<>();
+        for (Entry entry : windows.get(window).ranking) {
+            if (result.size() >= count) {
+                break;
+            }
+            // Во время обновления фильм может кратковременно присутствовать дважды
+            if (seen.add(entry.filmId())) {
+                result.add(entry.filmId());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Обнуляет корзины, выпавшие из окон, у всех фильмов с лайками в окне.
+     */
+    public void expire() {
+        long now = System.currentTimeMillis();
+        for (Window window : windows.values()) {
+            window.expire(now);
+        }
+        long cutoff = now - longestWindowMillis;
+        likeTimes.values().removeIf(likedAt -> likedAt < cutoff);
+    }
+
+    private void expireQuietly() {
+        try {
+            expire();
+        } catch (RuntimeException e) {
+            log.warn("Не удалось обновить тренды", e);
+        }
+    }
+
+    private static long pairKey(int filmId, int userId) {
+        return ((long) filmId << 32) | (userId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Публикует число фильмов с лайками в каждом окне.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        windows.forEach((window, state) -> Gauge.builder("filmorate.films.trending", state.counters, Map::size)
+                .description("Фильмы с лайками в окне трендов")
+                .tag("window", window.param())
+                .register(registry));
+    }
+
+    /**
+     * Счётчики и рейтинг одного окна. Счётчик фильма меняется только внутри compute по его ключу.
+     */
+    private static final class Window {
+        private final long bucketMillis;
+        private final int buckets;
+        private final ConcurrentHashMap<Integer, Counter> counters = new ConcurrentHashMap<>();
+        private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(RANKING_ORDER);
+
+        Window(TrendingWindow window) {
+            this.bucketMillis = window.bucket().toMillis();
+            this.buckets = window.buckets();
+        }
+
+        void add(int filmId, long now, long likedAt) {
+            long bucket = likedAt / bucketMillis;
+            long current = now / bucketMillis;
+            if (bucket <= current - buckets) {
+                return;
+            }
+            counters.compute(filmId, (id, counter) -> {
+                Counter updated = counter == null ? new Counter(buckets, current) : counter;
+                int before = updated.advance(current);
+                // Лайк «из будущего» (часы базы впереди) считаем текущим
+                updated.add(Math.min(bucket, current), 1);
+                return rerank(id, before, updated);
+            });
+        }
+
+        void remove(int filmId, long now, long likedAt) {
+            long bucket = likedAt / bucketMillis;
+            long current = now / bucketMillis;
+            // Корзина лайка уже выпала из окна: вычитать нечего
+            if (bucket <= current - buckets) {
+                return;
+            }
+            counters.computeIfPresent(filmId, (id, counter) -> {
+                int before = counter.advance(current);
+                counter.remove(Math.min(bucket, current));
+                return rerank(id, before, counter);
+            });
+        }
+
+        void expire(long now) {
+            long current = now / bucketMillis;
+            for (Integer filmId : counters.keySet()) {
+                counters.computeIfPresent(filmId, (id, counter) -> rerank(id, counter.advance(current), counter));
+            }
+        }
+
+        // Переставляет фильм в рейтинге; счётчик без лайков в окне удаляется вместе с позицией
+        private Counter rerank(int filmId, int before, Counter counter) {
+            int after = counter.sum;
+            if (after != before) {
+                // Сначала вставляем новую позицию, затем удаляем старую:
+                // параллельный читатель может увидеть фильм дважды, но не потеряет его
+                if (after > 0) {
+                    ranking.add(new Entry(filmId, after));
+                }
+                ranking.remove(new Entry(filmId, before));
+            }
+            return after > 0 ? counter : null;
+        }
+    }
+
+    /**
+     * Кольцевой буфер корзин одного фильма в одном окне. head — номер последней корзины буфера.
+     */
+    private static final class Counter {
+        private final int[] slots;
+        private long head;
+        private int sum;
+
+        Counter(int buckets, long head) {
+            this.slots = new int[buckets];
+            this.head = head;
+        }
+
+        /**
+         * Сдвигает окно к корзине current, обнуляя выпавшие корзины. Возвращает сумму до сдвига.
+         */
+        int advance(long current) {
+            int before = sum;
+            if (current > head) {
+                long expired = Math.min(current - head, slots.length);
+                for (long b = head + 1; b <= head + expired; b++) {
+                    int slot = (int) Math.floorMod(b, (long) slots.length);
+                    sum -= slots[slot];
+                    slots[slot] = 0;
+                }
+                head = current;
+            }
+            return before;
+        }
+
+        void add(long bucket, int count) {
+            slots[(int) Math.floorMod(bucket, (long) slots.length)] += count;
+            sum += count;
+        }
+
+        void remove(long bucket) {
+            int slot = (int) Math.floorMod(bucket, (long) slots.length);
+            if (slots[slot] > 0) {
+                slots[slot]--;
+                sum--;
+            }
+        }
+    }
+
+    private record Entry(int filmId, int likes) {
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.time.Duration;
+
+/**
+ * Окна трендов: длина окна и размер корзины, из которых оно складывается.
+ * Чем короче окно, тем мельче корзины — тем точнее граница окна при том же числе корзин.
+ */
+public enum TrendingWindow {
+    HOUR("1h", Duration.ofHours(1), Duration.ofMinutes(1)),
+    DAY("24h", Duration.ofDays(1), Duration.ofMinutes(15)),
+    WEEK("7d", Duration.ofDays(7), Duration.ofHours(1));
+
+    private final String param;
+    private final Duration length;
+    private final Duration bucket;
+
+    TrendingWindow(String param, Duration length, Duration bucket) {
+        this.param = param;
+        this.length = length;
+        this.bucket = bucket;
+    }
+
+    /**
+     * Окно по значению параметра window: 1h, 24h или 7d.
+     */
+    public static TrendingWindow fromParam(String value) {
+        for (TrendingWindow window : values()) {
+            if (window.param.equals(value)) {
+                return window;
+            }
+        }
+        throw new ValidationException("Окно трендов должно быть одним из: 1h, 24h, 7d.");
+    }
+
+    public String param() {
+        return param;
+    }
+
+    public Duration length() {
+        return length;
+    }
+
+    public Duration bucket() {
+        return bucket;
+    }
+
+    int buckets() {
+        return (int) (length.toMillis() / bucket.toMillis());
+    }
+}
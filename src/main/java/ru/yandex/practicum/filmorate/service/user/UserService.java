@@ -1,26 +1,84 @@
 package ru.yandex.practicum.filmorate.service.user;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BatchResult;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ChangeFeed;
+import ru.yandex.practicum.filmorate.service.ResourceVersions;
+import ru.yandex.practicum.filmorate.service.SingleFlights;
+import ru.yandex.practicum.filmorate.storage.friend.FriendStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.IntAdjacency;
+import ru.yandex.practicum.filmorate.util.IntBitmap;
+import ru.yandex.practicum.filmorate.util.SingleFlight;
 
 import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 // Сервис для работы с пользователями и функцией "друзья"
 @Service
 @Slf4j
+@Timed(value = "filmorate.service", histogram = true)  // Таймер на каждую операцию, теги class и method
 public class UserService {
+    // Максимальный размер страницы при постраничном чтении
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Число блокировок, между которыми распределяются пары пользователей при изменении дружбы
+    private static final int FRIEND_LOCK_STRIPES = 64;
+
     private final UserStorage userStorage;
     // Хранение связей «пользователь - его друзья»
-    // Ключ — ID пользователя, значение — множество ID его друзей
-    private final Map<Integer, Set<Integer>> friends = new HashMap<>();
+    private final FriendStorage friendStorage;
+    // Друзья в памяти (копия friendStorage, загружается при старте) для пересечений без обращения к базе
+    private final IntAdjacency friends = new IntAdjacency();
+    // Изменения одной пары сериализуются, чтобы копия в памяти не разошлась с хранилищем
+    private final ReentrantLock[] friendLocks = new ReentrantLock[FRIEND_LOCK_STRIPES];
+    // Версии пользователей и списков друзей для ETag: поднимаются после каждого изменения
+    private final ResourceVersions versions;
+    // Лента изменений для подписчиков GET /feed
+    private final ChangeFeed feed;
+    // Сколько записей сохраняется одной пакетной операцией при массовой загрузке
+    private final int batchSize;
+    // Одновременные чтения одного пользователя и одного списка друзей схлопываются в одно обращение к хранилищу
+    private final SingleFlight<ReadKey, User> userReads;
+    private final SingleFlight<ReadKey, Set<User>> friendsReads;
 
-    public UserService(UserStorage userStorage) {
+    public UserService(UserStorage userStorage,
+                       FriendStorage friendStorage,
+                       ResourceVersions versions,
+                       ChangeFeed feed,
+                       SingleFlights singleFlights,
+                       @Value("${filmorate.batch.size:500}") int batchSize) {
         this.userStorage = userStorage;
+        this.friendStorage = friendStorage;
+        this.versions = versions;
+        this.feed = feed;
+        this.batchSize = batchSize;
+        this.userReads = singleFlights.create("users");
+        this.friendsReads = singleFlights.create("friends");
+        for (int i = 0; i < friendLocks.length; i++) {
+            friendLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Загружает сохранённые дружеские связи в память.
+     */
+    @PostConstruct
+    void loadFriends() {
+        long started = System.nanoTime();
+        friendStorage.forEachFriendship(friends::add);
+        log.info("Загружено {} записей дружбы за {} мс", friends.edgeCount(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
     }
 
     /**
@@ -32,18 +90,92 @@ public class UserService {
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
         }
-        return userStorage.addUser(user);
+        User created = userStorage.addUser(user);
+        userCreated(created);
+        return created;
+    }
+
+    /**
+     * Пакетное создание пользователей. Каждая запись проверяется теми же правилами, что и в createUser;
+     * ошибочные записи попадают в ошибки результата и не мешают сохранению остальных.
+     * null в последовательности означает запись, которую не удалось разобрать.
+     */
+    public BatchResult<User> createUsers(Iterable<User> users) {
+        BatchResult<User> result = new BatchResult<>();
+        List<User> chunk = new ArrayList<>(batchSize);
+        List<Integer> chunkIndexes = new ArrayList<>(batchSize);
+        int index = 0;
+        for (User user : users) {
+            try {
+                if (user == null) {
+                    throw new ValidationException("Запись не распознана.");
+                }
+                validateUser(user);
+                if (user.getName() == null || user.getName().isBlank()) {
+                    user.setName(user.getLogin());
+                }
+                chunk.add(user);
+                chunkIndexes.add(index);
+            } catch (ValidationException e) {
+                result.addError(index, e.getMessage());
+            }
+            index++;
+            if (chunk.size() == batchSize) {
+                saveUsers(chunk, chunkIndexes, result);
+                chunk.clear();
+                chunkIndexes.clear();
+            }
+        }
+        saveUsers(chunk, chunkIndexes, result);
+        log.info("Пакетная загрузка пользователей: создано {}, ошибок {}", result.getCreated().size(), result.getErrors().size());
+        return result;
     }
 
     /**
      * Обновление существующего пользователя с валидацией.
+     * Пользователь входит в списки друзей всех своих друзей, поэтому меняются и их версии.
      */
     public User updateUser(User user) {
         validateUser(user);
         if (user.getName() == null || user.getName().isBlank()) {
             user.setName(user.getLogin());
         }
-        return userStorage.updateUser(user);
+        User updated = userStorage.updateUser(user);
+        versions.userChanged(updated.getId());
+        for (int friendId : friends.values(updated.getId())) {
+            versions.friendsChanged(friendId);
+        }
+        return updated;
+    }
+
+    private void saveUsers(List<User> chunk, List<Integer> chunkIndexes, BatchResult<User> result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            for (User created : userStorage.addUsers(chunk)) {
+                userCreated(created);
+                result.getCreated().add(created);
+            }
+        } catch (DataAccessException e) {
+            // Пакет откатился целиком — сохраняем его построчно, чтобы найти конкретные ошибочные строки
+            log.warn("Пакет пользователей отклонён базой, повторяем построчно: {}", e.getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                try {
+                    User created = userStorage.addUser(chunk.get(i));
+                    userCreated(created);
+                    result.getCreated().add(created);
+                } catch (DataAccessException rowError) {
+                    result.addError(chunkIndexes.get(i), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    // id мог запрашиваться до создания: ETag, выданный тогда вместе с 404, не должен совпасть с новым
+    private void userCreated(User created) {
+        versions.userChanged(created.getId());
+        versions.friendsChanged(created.getId());
     }
 
     /**
@@ -69,11 +201,39 @@ public class UserService {
         return userStorage.getAllUsers();
     }
 
+    /**
+     * Возвращает страницу пользователей с id больше afterId, упорядоченных по id.
+     */
+    public List<User> getUsersPage(int afterId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE + ".");
+        }
+        return userStorage.getUsersPage(afterId, limit);
+    }
+
+    /**
+     * Передаёт всех пользователей по одному в порядке id, не собирая их в список.
+     */
+    public void streamUsers(Consumer<User> consumer) {
+        userStorage.streamUsers(consumer);
+    }
+
     /**
      * Возвращает одного пользователя по ID.
      */
     public User getUserById(int id) {
-        return userStorage.getUserById(id);
+        return userReads.execute(new ReadKey(id, versions.userVersion(id)), () -> userStorage.getUserById(id));
+    }
+
+    /**
+     * Возвращает пользователей с переданными id одним запросом к хранилищу, в порядке запроса и без повторов.
+     * Несуществующие id пропускаются: вызывающий сам видит, каких пользователей нет в ответе.
+     */
+    public List<User> getUsersByIds(List<Integer> ids) {
+        if (ids.isEmpty() || ids.size() > MAX_PAGE_SIZE) {
+            throw new ValidationException("Список пользователей должен содержать от 1 до " + MAX_PAGE_SIZE + " id.");
+        }
+        return toUsers(new LinkedHashSet<>(ids));
     }
 
     /**
@@ -81,10 +241,26 @@ public class UserService {
      */
     public void addFriend(int userId, int friendId) {
         log.info("Пользователь {} добавляет в друзья пользователя {}", userId, friendId);
-        userStorage.getUserById(userId);
-        userStorage.getUserById(friendId);
-        friends.computeIfAbsent(userId, k -> new HashSet<>()).add(friendId);
-        friends.computeIfAbsent(friendId, k -> new HashSet<>()).add(userId);
+        ReentrantLock lock = friendLock(userId, friendId);
+        lock.lock();
+        try {
+            // Уже друзья — значит, оба пользователя есть и хранилище трогать не нужно
+            if (friends.contains(userId, friendId)) {
+                return;
+            }
+            // Хранилище само проверяет существование обоих в том же запросе, что и вставка
+            if (!friendStorage.addFriend(userId, friendId)) {
+                requireUser(userId);
+                requireUser(friendId);
+            }
+            friends.add(userId, friendId);
+            friends.add(friendId, userId);
+            versions.friendsChanged(userId);
+            versions.friendsChanged(friendId);
+            feed.friendAdded(userId, friendId);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -92,10 +268,24 @@ public class UserService {
      */
     public void removeFriend(int userId, int friendId) {
         log.info("Пользователь {} удаляет из друзей пользователя {}", userId, friendId);
-        userStorage.getUserById(userId);
-        userStorage.getUserById(friendId);
-        Optional.ofNullable(friends.get(userId)).ifPresent(set -> set.remove(friendId));
-        Optional.ofNullable(friends.get(friendId)).ifPresent(set -> set.remove(userId));
+        ReentrantLock lock = friendLock(userId, friendId);
+        lock.lock();
+        try {
+            // Связь есть в памяти — оба пользователя существуют, остаётся один DELETE
+            if (!friends.contains(userId, friendId)) {
+                requireUser(userId);
+                requireUser(friendId);
+                return;
+            }
+            friendStorage.removeFriend(userId, friendId);
+            friends.remove(userId, friendId);
+            friends.remove(friendId, userId);
+            versions.friendsChanged(userId);
+            versions.friendsChanged(friendId);
+            feed.friendRemoved(userId, friendId);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -103,26 +293,64 @@ public class UserService {
      */
     public Set<User> getFriends(int userId) {
         log.info("Получение списка друзей для пользователя {}", userId);
-        userStorage.getUserById(userId);
-        return Optional.ofNullable(friends.get(userId))
-                .orElse(Collections.emptySet())
-                .stream()
-                .map(userStorage::getUserById)
-                .collect(Collectors.toSet());
+        return friendsReads.execute(new ReadKey(userId, versions.friendsVersion(userId)), () -> {
+            requireUser(userId);
+            return Collections.unmodifiableSet(new LinkedHashSet<>(friendStorage.getFriends(userId)));
+        });
     }
 
     /**
      * Возвращает множество общих друзей пользователей userId и otherId.
+     * Пересечение считается по битовым картам друзей в памяти; из хранилища одним запросом читаются только общие друзья.
      */
     public Set<User> getCommonFriends(int userId, int otherId) {
         log.info("Получение общих друзей для пользователей {} и {}", userId, otherId);
-        userStorage.getUserById(userId);
-        userStorage.getUserById(otherId);
-        Set<Integer> set1 = Optional.ofNullable(friends.get(userId)).orElse(Collections.emptySet());
-        Set<Integer> set2 = Optional.ofNullable(friends.get(otherId)).orElse(Collections.emptySet());
-        return set1.stream()
-                .filter(set2::contains)
-                .map(userStorage::getUserById)
-                .collect(Collectors.toSet());
+        requireUser(userId);
+        requireUser(otherId);
+        List<Integer> commonIds = Arrays.stream(friends.intersect(userId, otherId)).boxed().toList();
+        return new LinkedHashSet<>(toUsers(commonIds));
+    }
+
+    private List<User> toUsers(Collection<Integer> userIds) {
+        Map<Integer, User> found = userStorage.getUsersByIds(userIds);
+        List<User> users = new ArrayList<>(found.size());
+        for (Integer userId : userIds) {
+            User user = found.get(userId);
+            if (user != null) {
+                users.add(user);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Копия множества id друзей пользователя для пересечения с другими множествами (например, с лайками фильма).
+     */
+    public IntBitmap getFriendIds(int userId) {
+        requireUser(userId);
+        return friends.copy(userId);
+    }
+
+    private ReentrantLock friendLock(int userId, int friendId) {
+        // Пара неупорядочена: (a, b) и (b, a) должны попадать на одну блокировку
+        return friendLocks[Math.floorMod(Math.min(userId, friendId), FRIEND_LOCK_STRIPES)];
+    }
+
+    /**
+     * Есть ли пользователь с таким id. Строка не читается: хранилище отвечает из кэша или одним EXISTS.
+     */
+    public boolean userExists(int userId) {
+        return userStorage.userExists(userId);
+    }
+
+    // Проверка существования не читает строку целиком: хранилище отвечает из кэша или одним EXISTS
+    private void requireUser(int userId) {
+        if (!userStorage.userExists(userId)) {
+            throw new NotFoundException("User with id=" + userId + " not found");
+        }
+    }
+
+    // Ключ чтения: id и версия записи на момент запроса
+    private record ReadKey(int id, long version) {
     }
 }
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.jdbc.film.JdbcFilmStorage;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Кэширующая обёртка над JdbcFilmStorage.
+ * Фильмы по id читаются через ReadThroughCache: ограниченный по размеру и времени жизни кэш,
+ * проверки существования отвечаются из битовой карты известных id.
+ */
+@Component
+@Primary  // Этот бин будет предпочтительным при автосвязывании FilmStorage
+@Profile("!inmemory")  // In-memory хранилищу кэш не нужен
+@Timed(value = "filmorate.storage", histogram = true)  // Таймер на каждый метод, теги class и method
+public class CachingFilmStorage implements FilmStorage, MeterBinder {
+    private final FilmStorage delegate;
+    private final ReadThroughCache<Film> cache;
+
+    public CachingFilmStorage(JdbcFilmStorage delegate,
+                              @Value("${filmorate.cache.films.max-size:10000}") long maxSize,
+                              @Value("${filmorate.cache.films.ttl:10m}") Duration ttl) {
+        this.delegate = delegate;
+        this.cache = new ReadThroughCache<>("films", maxSize, ttl, delegate::getFilmById, delegate::getFilmsByIds,
+                delegate::filmExists, delegate::getExistingFilmIds);
+    }
+
+    @Override
+    public Film addFilm(Film film) {
+        Film created = delegate.addFilm(film);
+        cache.created(created.getId());
+        return created;
+    }
+
+    @Override
+    public List<Film> addFilms(List<Film> films) {
+        List<Film> created = delegate.addFilms(films);
+        created.forEach(film -> cache.created(film.getId()));
+        return created;
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        Film updated = delegate.updateFilm(film);
+        cache.updated(film.getId());
+        return updated;
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return delegate.getAllFilms();
+    }
+
+    @Override
+    public Film getFilmById(int id) {
+        return cache.get(id);
+    }
+
+    @Override
+    public Map<Integer, Film> getFilmsByIds(Collection<Integer> ids) {
+        return cache.getAll(ids);
+    }
+
+    @Override
+    public boolean filmExists(int id) {
+        return cache.exists(id);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return delegate.getFilmsPage(afterId, limit);
+    }
+
+    @Override
+    public void streamFilms(Consumer<Film> consumer) {
+        delegate.streamFilms(consumer);
+    }
+
+    @Override
+    public Set<Integer> getExistingFilmIds(Collection<Integer> ids) {
+        return cache.existing(ids);
+    }
+
+    /**
+     * Статистика попаданий и промахов кэша фильмов.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Публикует размер кэша, попадания, промахи и вытеснения как метрики cache.* с тегом cache=films.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cache.bindTo(registry);
+    }
+}
@@ -0,0 +1,113 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.storage.jdbc.user.JdbcUserStorage;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Кэширующая обёртка над JdbcUserStorage.
+ * Пользователи по id читаются через ReadThroughCache: ограниченный по размеру и времени жизни кэш,
+ * проверки существования отвечаются из битовой карты известных id.
+ */
+@Component
+@Primary  // Этот бин будет предпочтительным при автосвязывании UserStorage
+@Profile("!inmemory")  // In-memory хранилищу кэш не нужен
+@Timed(value = "filmorate.storage", histogram = true)  // Таймер на каждый метод, теги class и method
+public class CachingUserStorage implements UserStorage, MeterBinder {
+    private final UserStorage delegate;
+    private final ReadThroughCache<User> cache;
+
+    public CachingUserStorage(JdbcUserStorage delegate,
+                              @Value("${filmorate.cache.users.max-size:10000}") long maxSize,
+                              @Value("${filmorate.cache.users.ttl:10m}") Duration ttl) {
+        this.delegate = delegate;
+        this.cache = new ReadThroughCache<>("users", maxSize, ttl, delegate::getUserById, delegate::getUsersByIds,
+                delegate::userExists, delegate::getExistingUserIds);
+    }
+
+    @Override
+    public User addUser(User user) {
+        User created = delegate.addUser(user);
+        cache.created(created.getId());
+        return created;
+    }
+
+    @Override
+    public List<User> addUsers(List<User> users) {
+        List<User> created = delegate.addUsers(users);
+        created.forEach(user -> cache.created(user.getId()));
+        return created;
+    }
+
+    @Override
+    public User updateUser(User user) {
+        User updated = delegate.updateUser(user);
+        cache.updated(user.getId());
+        return updated;
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return delegate.getAllUsers();
+    }
+
+    @Override
+    public User getUserById(int id) {
+        return cache.get(id);
+    }
+
+    @Override
+    public Map<Integer, User> getUsersByIds(Collection<Integer> ids) {
+        return cache.getAll(ids);
+    }
+
+    @Override
+    public boolean userExists(int id) {
+        return cache.exists(id);
+    }
+
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        return delegate.getUsersPage(afterId, limit);
+    }
+
+    @Override
+    public void streamUsers(Consumer<User> consumer) {
+        delegate.streamUsers(consumer);
+    }
+
+    @Override
+    public Set<Integer> getExistingUserIds(Collection<Integer> ids) {
+        return cache.existing(ids);
+    }
+
+    /**
+     * Статистика попаданий и промахов кэша пользователей.
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Публикует размер кэша, попадания, промахи и вытеснения как метрики cache.* с тегом cache=users.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        cache.bindTo(registry);
+    }
+}
@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Компактное множество известных id: один бит на id.
+ * Миллион id занимает около 125 КБ. Чтение без блокировок,
+ * запись (редкая: создание сущности или первый промах) — под блокировкой.
+ */
+class IdBitmap {
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile AtomicLongArray words = new AtomicLongArray(1024);
+
+    /**
+     * Возвращает true, если id отмечен как существующий.
+     */
+    boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+        AtomicLongArray current = words;
+        int index = id >>> 6;
+        return index < current.length() && (current.get(index) & (1L << id)) != 0;
+    }
+
+    /**
+     * Отмечает id как существующий.
+     */
+    void add(int id) {
+        if (id < 0 || contains(id)) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            int index = id >>> 6;
+            AtomicLongArray current = words;
+            if (index >= current.length()) {
+                // Увеличиваем массив с запасом, копируя уже отмеченные id
+                AtomicLongArray grown = new AtomicLongArray(Math.max(index + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                current = grown;
+            }
+            current.getAndAccumulate(index, 1L << id, (a, b) -> a | b);
+            words = current;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Счётчики инвалидаций по полосам id для пакетной дочитки в кэш.
+ * Пакетная загрузка идёт мимо атомарного Cache.get, поэтому обновление, пришедшее во время неё,
+ * успело бы сбросить запись до того, как загрузка положит прочитанную раньше версию.
+ * Загрузка запоминает счётчик до чтения и кладёт запись, только если он не изменился;
+ * совпадение полос у разных id лишь пропускает кэширование, но не отдаёт устаревшее.
+ */
+class InvalidationStamps {
+    private static final int STRIPES = 1024;
+
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES);
+
+    /**
+     * Текущий счётчик полосы id: берётся до чтения из базы.
+     */
+    long get(int id) {
+        return stamps.get(stripe(id));
+    }
+
+    /**
+     * Отмечает изменение id: вызывается после записи в базу и до сброса записи кэша.
+     */
+    void advance(int id) {
+        stamps.incrementAndGet(stripe(id));
+    }
+
+    /**
+     * Кладёт прочитанное значение в кэш, если записи ещё нет и id не менялся с момента stamp.
+     * Проверка идёт под блокировкой ключа: сброс записи после неё удалит и положенное значение.
+     */
+    <V> void putIfUnchanged(Cache<Integer, V> cache, int id, long stamp, V value) {
+        cache.asMap().compute(id, (key, current) -> current != null || get(id) != stamp ? current : value);
+    }
+
+    private static int stripe(int id) {
+        return Math.floorMod(id, STRIPES);
+    }
+}
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * Кэш сущностей по id поверх хранилища: общая часть CachingFilmStorage и CachingUserStorage.
+ * Записи читаются через ограниченный по размеру и времени жизни кэш, недостающие при пакетном чтении
+ * дочитываются одним запросом. Проверки существования отвечаются из битовой карты известных id:
+ * сущности не удаляются, поэтому бит, однажды поставленный, не сбрасывается.
+ * Отсутствие в кэш не попадает: исключение загрузчика пробрасывается как есть.
+ *
+ * @param <V> тип сущности
+ */
+class ReadThroughCache<V> {
+    private final String name;
+    private final Cache<Integer, V> cache;
+    private final Function<Integer, V> loader;
+    private final Function<Collection<Integer>, Map<Integer, V>> bulkLoader;
+    private final IntPredicate existsLoader;
+    private final Function<Collection<Integer>, Set<Integer>> bulkExistsLoader;
+    // id, существование которых уже подтверждено
+    private final IdBitmap knownIds = new IdBitmap();
+    // Не даёт пакетной дочитке положить в кэш версию, прочитанную до параллельного обновления
+    private final InvalidationStamps stamps = new InvalidationStamps();
+
+    /**
+     * @param name             имя кэша в метриках (тег cache)
+     * @param loader           чтение одной записи; для отсутствующего id бросает исключение
+     * @param bulkLoader       чтение пачки записей; отсутствующих id в ответе нет
+     * @param existsLoader     проверка существования одного id
+     * @param bulkExistsLoader существующие id из пачки
+     */
+    ReadThroughCache(String name, long maxSize, Duration ttl,
+                     Function<Integer, V> loader,
+                     Function<Collection<Integer>, Map<Integer, V>> bulkLoader,
+                     IntPredicate existsLoader,
+                     Function<Collection<Integer>, Set<Integer>> bulkExistsLoader) {
+        this.name = name;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.loader = loader;
+        this.bulkLoader = bulkLoader;
+        this.existsLoader = existsLoader;
+        this.bulkExistsLoader = bulkExistsLoader;
+    }
+
+    /**
+     * Отмечает id созданной сущности как существующий.
+     */
+    void created(int id) {
+        knownIds.add(id);
+    }
+
+    /**
+     * Сбрасывает запись id после её изменения в хранилище.
+     */
+    void updated(int id) {
+        stamps.advance(id);
+        cache.invalidate(id);
+    }
+
+    V get(int id) {
+        V value = cache.get(id, loader);
+        knownIds.add(id);
+        return value;
+    }
+
+    Map<Integer, V> getAll(Collection<Integer> ids) {
+        // Из кэша берутся уже загруженные записи, недостающие дочитываются одним запросом;
+        // отсутствующие в хранилище id и обновлённые во время чтения в кэш не попадают
+        Map<Integer, V> found = new HashMap<>(cache.getAllPresent(ids));
+        Map<Integer, Long> missing = new HashMap<>();
+        for (Integer id : ids) {
+            if (!found.containsKey(id)) {
+                missing.putIfAbsent(id, stamps.get(id));
+            }
+        }
+        if (!missing.isEmpty()) {
+            bulkLoader.apply(List.copyOf(missing.keySet())).forEach((id, value) -> {
+                found.put(id, value);
+                stamps.putIfUnchanged(cache, id, missing.get(id), value);
+            });
+        }
+        found.keySet().forEach(knownIds::add);
+        return found;
+    }
+
+    boolean exists(int id) {
+        if (knownIds.contains(id) || cache.getIfPresent(id) != null) {
+            return true;
+        }
+        boolean exists = existsLoader.test(id);
+        if (exists) {
+            knownIds.add(id);
+        }
+        return exists;
+    }
+
+    Set<Integer> existing(Collection<Integer> ids) {
+        // В хранилище уходят только id, которых ещё нет в битовой карте
+        Set<Integer> existing = new HashSet<>();
+        List<Integer> unknown = new ArrayList<>();
+        for (Integer id : ids) {
+            if (knownIds.contains(id)) {
+                existing.add(id);
+            } else {
+                unknown.add(id);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            Set<Integer> found = bulkExistsLoader.apply(unknown);
+            found.forEach(knownIds::add);
+            existing.addAll(found);
+        }
+        return existing;
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Публикует размер кэша, попадания, промахи и вытеснения как метрики cache.* с тегом cache=name.
+     */
+    void bindTo(MeterRegistry registry) {
+        new CaffeineCacheMetrics<>(cache, name, Tags.empty()).bindTo(registry);
+    }
+}
@@ -2,6 +2,10 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Интерфейс для хранилища фильмов.
@@ -16,6 +20,13 @@ public interface FilmStorage {
      */
     Film addFilm(Film film);
 
+    /**
+     * Сохраняет пачку новых фильмов одной пакетной операцией.
+     * @param films объекты без id
+     * @return те же объекты в том же порядке, но с присвоенными id
+     */
+    List<Film> addFilms(List<Film> films);
+
     /**
      * Обновляет данные существующего фильма.
      * @param film объект фильма с уже существующим id
@@ -34,4 +45,36 @@ public interface FilmStorage {
      * @throws ru.yandex.practicum.filmorate.exception.NotFoundException если фильм не найден
      */
     Film getFilmById(int id);
-}
\ No newline at end of file
+
+    /**
+     * Возвращает фильмы с переданными id одним запросом на весь набор.
+     * @param ids идентификаторы в любом порядке, повторы допускаются
+     * @return найденные записи по id; отсутствующих id в результате нет
+     */
+    Map<Integer, Film> getFilmsByIds(Collection<Integer> ids);
+
+    /**
+     * Проверяет, что фильм с таким id существует, не загружая его целиком.
+     * @param id идентификатор фильма
+     */
+    boolean filmExists(int id);
+
+    /**
+     * Возвращает страницу фильмов, упорядоченных по id (keyset-пагинация).
+     * @param afterId id последнего элемента предыдущей страницы (0 — с начала)
+     * @param limit максимальный размер страницы
+     */
+    List<Film> getFilmsPage(int afterId, int limit);
+
+    /**
+     * Передаёт всех фильмов по одному в порядке id, не собирая их в общий список.
+     * @param consumer получатель очередного объекта
+     */
+    void streamFilms(Consumer<Film> consumer);
+
+    /**
+     * Возвращает те из переданных id, для которых существуют записи фильмов. Один запрос на весь набор.
+     * @param ids проверяемые идентификаторы
+     */
+    Set<Integer> getExistingFilmIds(Collection<Integer> ids);
+}
@@ -1,6 +1,9 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import io.micrometer.core.annotation.Timed;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 
@@ -8,14 +11,23 @@ import java.time.LocalDate;
 import java.time.Month;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
-//Реализация FilmStorage на основе in-memory HashMap.
+// Реализация FilmStorage на основе in-memory ConcurrentSkipListMap.
+// Чтения не берут блокировок, записи неблокирующие, обход идёт в порядке id.
 
 @Component  // Позволяет Spring найти и внедрить это хранилище
+@Profile("inmemory")  // Используется вместо JDBC-хранилища в профиле inmemory
+@Timed(value = "filmorate.storage", histogram = true)  // Таймер на каждый метод, теги class и method
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Integer, Film> films = new HashMap<>();
+    private final ConcurrentNavigableMap<Integer, Film> films = new ConcurrentSkipListMap<>();
     private final AtomicInteger idGen = new AtomicInteger(0);  // Генератор уникальных ID
 
     // Первая дата показа фильма в истории
@@ -31,31 +43,75 @@ public class InMemoryFilmStorage implements FilmStorage {
         return film;
     }
 
+    @Override
+    public List<Film> addFilms(List<Film> newFilms) {
+        newFilms.forEach(this::addFilm);
+        return newFilms;
+    }
+
     @Override
     public Film updateFilm(Film film) {
         validate(film);  // Проверяем корректность всех полей фильма перед обновлением существующей записи
         int id = film.getId(); // Извлекаем ID фильма для поиска
-        if (!films.containsKey(id)) {
-            throw new ValidationException("Film with id=" + id + " not found");
+        // replace атомарно проверяет наличие и обновляет данные фильма по ключу id
+        if (films.replace(id, film) == null) {
+            throw new NotFoundException("Film with id=" + id + " not found");
         }
-        films.put(id, film); // Обновляем данные фильма по ключу id
         return film;
     }
 
     @Override
     public Collection<Film> getAllFilms() {
-        return films.values();
+        // Отдаём копию, а не живое представление: его нельзя безопасно сериализовать во время записи
+        return List.copyOf(films.values());
     }
 
     @Override
     public Film getFilmById(int id) {
         Film film = films.get(id);
         if (film == null) {
-            throw new ValidationException("Film with id=" + id + " not found");
+            throw new NotFoundException("Film with id=" + id + " not found");
         }
         return film;
     }
 
+    @Override
+    public Map<Integer, Film> getFilmsByIds(Collection<Integer> ids) {
+        Map<Integer, Film> found = new HashMap<>();
+        for (Integer id : ids) {
+            Film film = films.get(id);
+            if (film != null) {
+                found.put(id, film);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean filmExists(int id) {
+        return films.containsKey(id);
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        // tailMap отдаёт элементы строго после afterId уже в порядке id
+        return films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public void streamFilms(Consumer<Film> consumer) {
+        films.values().forEach(consumer);
+    }
+
+    @Override
+    public Set<Integer> getExistingFilmIds(Collection<Integer> ids) {
+        return ids.stream()
+                .filter(films::containsKey)
+                .collect(Collectors.toSet());
+    }
+
     // Вспомогательный метод для валидации полей Film
     private void validate(Film film) {
         if (film.getName() == null || film.getName().isBlank()) {
@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.storage.friend;
+
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.util.IntPairConsumer;
+
+import java.util.List;
+
+/**
+ * Интерфейс для хранилища дружеских связей.
+ * Дружба взаимная: добавление и удаление затрагивают обе стороны.
+ * Существование пользователей при добавлении проверяет само хранилище вместе с записью
+ * (в JDBC — одним запросом MERGE ... SELECT) и сообщает результат через возвращаемое значение;
+ * сервису остаётся только выяснить, кого из двоих нет, когда addFriend вернул false.
+ */
+public interface FriendStorage {
+
+    /**
+     * Делает пользователей userId и friendId друзьями; повторное добавление существующей дружбы ничего не меняет.
+     *
+     * @return true, если оба пользователя существуют (в том числе когда они уже были друзьями);
+     * false, если хотя бы одного из них нет — тогда ничего не записывается
+     */
+    boolean addFriend(int userId, int friendId);
+
+    /**
+     * Удаляет дружбу пользователей userId и friendId.
+     */
+    void removeFriend(int userId, int friendId);
+
+    /**
+     * Возвращает друзей пользователя userId, упорядоченных по id.
+     */
+    List<User> getFriends(int userId);
+
+    /**
+     * Передаёт каждую запись дружбы в consumer как пару (userId, friendId), не собирая их в коллекцию.
+     * Дружба взаимная, поэтому каждая пара встречается с обеих сторон.
+     */
+    void forEachFriendship(IntPairConsumer consumer);
+}
@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.storage.friend;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.util.IntAdjacency;
+import ru.yandex.practicum.filmorate.util.IntPairConsumer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Реализация FriendStorage на основе in-memory списков смежности IntAdjacency.
+ * Пользователей берёт из InMemoryUserStorage.
+ */
+@Component  // Позволяет Spring найти и внедрить это хранилище
+@Profile("inmemory")  // Используется вместо JDBC-хранилища в профиле inmemory
+@Timed(value = "filmorate.storage", histogram = true)  // Таймер на каждый метод, теги class и method
+public class InMemoryFriendStorage implements FriendStorage, MeterBinder {
+    // Ключ — ID пользователя, значения — ID его друзей (каждая дружба хранится с обеих сторон)
+    private final IntAdjacency friends = new IntAdjacency();
+    private final InMemoryUserStorage userStorage;
+
+    public InMemoryFriendStorage(InMemoryUserStorage userStorage) {
+        this.userStorage = userStorage;
+    }
+
+    @Override
+    public boolean addFriend(int userId, int friendId) {
+        if (!userStorage.userExists(userId) || !userStorage.userExists(friendId)) {
+            return false;
+        }
+        friends.add(userId, friendId);
+        friends.add(friendId, userId);
+        return true;
+    }
+
+    @Override
+    public void removeFriend(int userId, int friendId) {
+        friends.remove(userId, friendId);
+        friends.remove(friendId, userId);
+    }
+
+    @Override
+    public List<User> getFriends(int userId) {
+        return toUsers(friends.values(userId));
+    }
+
+    @Override
+    public void forEachFriendship(IntPairConsumer consumer) {
+        friends.forEachKey(userId -> {
+            for (int friendId : friends.values(userId)) {
+                consumer.accept(userId, friendId);
+            }
+        });
+    }
+
+    /**
+     * Публикует число пользователей с друзьями и общее число записей дружбы.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.friends.users", friends, IntAdjacency::keyCount)
+                .description("Пользователи, у которых есть или были друзья")
+                .register(registry);
+        Gauge.builder("filmorate.friends.links", friends, IntAdjacency::edgeCount)
+                .description("Записи дружбы (каждая дружба учитывается дважды)")
+                .register(registry);
+    }
+
+    // id уже отсортированы по возрастанию
+    private List<User> toUsers(int[] ids) {
+        return Arrays.stream(ids)
+                .mapToObj(userStorage::getUserById)
+                .toList();
+    }
+}
@@ -0,0 +1,124 @@
+package ru.yandex.practicum.filmorate.storage.jdbc;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ограничивает число одновременных обращений к базе размером пула соединений.
+ * С виртуальными потоками число одновременных запросов к серверу больше не ограничено пулом Tomcat,
+ * поэтому очередь к базе выстраивается здесь: поток ждёт разрешения не дольше acquire-timeout,
+ * после чего запрос завершается ответом 503, а не висит в ожидании соединения из пула.
+ * Разрешение берётся при получении соединения и возвращается при его закрытии.
+ */
+@Component
+@ConditionalOnProperty(name = "filmorate.jdbc.bulkhead.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class JdbcBulkhead implements BeanPostProcessor {
+    // Размер пула Hikari по умолчанию: до старта пула getMaximumPoolSize() возвращает -1
+    private static final int HIKARI_DEFAULT_POOL_SIZE = 10;
+
+    private final int maxConcurrency;
+    private final Duration acquireTimeout;
+
+    public JdbcBulkhead(@Value("${filmorate.jdbc.bulkhead.max-concurrency:0}") int maxConcurrency,
+                        @Value("${filmorate.jdbc.bulkhead.acquire-timeout:2s}") Duration acquireTimeout) {
+        this.maxConcurrency = maxConcurrency;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof HikariDataSource hikari)) {
+            return bean;
+        }
+        // 0 — столько же, сколько соединений в пуле
+        int poolSize = hikari.getMaximumPoolSize() > 0 ? hikari.getMaximumPoolSize() : HIKARI_DEFAULT_POOL_SIZE;
+        int permits = maxConcurrency > 0 ? maxConcurrency : poolSize;
+        log.info("Одновременных обращений к базе не больше {}, ожидание до {}", permits, acquireTimeout);
+        return new BulkheadDataSource(hikari, permits, acquireTimeout);
+    }
+
+    static class BulkheadDataSource extends DelegatingDataSource {
+        private final Semaphore permits;
+        private final long timeoutNanos;
+
+        BulkheadDataSource(DataSource target, int permits, Duration acquireTimeout) {
+            super(target);
+            this.permits = new Semaphore(permits, true);
+            this.timeoutNanos = acquireTimeout.toNanos();
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            acquire();
+            return guarded(super::getConnection);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            acquire();
+            return guarded(() -> super.getConnection(username, password));
+        }
+
+        private void acquire() throws SQLException {
+            try {
+                if (!permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                    throw new SQLTransientConnectionException("База перегружена: все соединения заняты");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLTransientConnectionException("Ожидание соединения прервано", e);
+            }
+        }
+
+        private Connection guarded(ConnectionSupplier supplier) throws SQLException {
+            Connection connection;
+            try {
+                connection = supplier.get();
+            } catch (SQLException | RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+            AtomicBoolean released = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if ("close".equals(method.getName()) && released.compareAndSet(false, true)) {
+                            try {
+                                connection.close();
+                            } finally {
+                                permits.release();
+                            }
+                            return null;
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+}
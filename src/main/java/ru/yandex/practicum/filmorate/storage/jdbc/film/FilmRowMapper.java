@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage.jdbc.film;
+
+import org.springframework.jdbc.core.RowMapper;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Преобразует строку таблицы films в объект Film.
+ * Ожидает колонки id, name, description, release_date, duration.
+ */
+public class FilmRowMapper implements RowMapper<Film> {
+
+    @Override
+    public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Film f = new Film();
+        f.setId(rs.getInt("id"));
+        f.setName(rs.getString("name"));
+        f.setDescription(rs.getString("description"));
+        f.setReleaseDate(rs.getDate("release_date").toLocalDate());
+        f.setDuration(rs.getLong("duration"));
+        return f;
+    }
+}
@@ -1,28 +1,47 @@
 package ru.yandex.practicum.filmorate.storage.jdbc.film;
 
-import org.springframework.context.annotation.Primary;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * JDBC-реализация хранилища фильмов с использованием JdbcTemplate.
  */
 @Repository
-@Primary  // Этот бин будет предпочтительным при автосвязывании FilmStorage
+@Profile("!inmemory")  // В профиле inmemory заменяется in-memory реализацией
+@Timed(value = "filmorate.storage", histogram = true)  // Таймер на каждый метод, теги class и method
 public class JdbcFilmStorage implements FilmStorage {
+    private static final FilmRowMapper FILM_ROW_MAPPER = new FilmRowMapper();
+    private static final String SELECT_FILMS = "SELECT id, name, description, release_date, duration FROM films";
+
     private final JdbcTemplate jdbcTemplate;
+    private final int streamFetchSize;
 
-    public JdbcFilmStorage(JdbcTemplate jdbcTemplate) {
+    public JdbcFilmStorage(JdbcTemplate jdbcTemplate,
+                           @Value("${filmorate.jdbc.stream-fetch-size:500}") int streamFetchSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.streamFetchSize = streamFetchSize;
     }
 
     @Override
@@ -45,6 +64,32 @@ public class JdbcFilmStorage implements FilmStorage {
         return film;
     }
 
+    @Override
+    @Transactional  // Пакет либо сохраняется целиком, либо откатывается — без частично вставленных строк
+    public List<Film> addFilms(List<Film> films) {
+        // Все строки уходят одним executeBatch, сгенерированные id читаются в порядке вставки
+        String sql = "INSERT INTO films (name, description, release_date, duration) VALUES (?, ?, ?, ?)";
+        return jdbcTemplate.execute((ConnectionCallback<List<Film>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"})) {
+                for (Film film : films) {
+                    ps.setString(1, film.getName());
+                    ps.setString(2, film.getDescription());
+                    ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+                    ps.setLong(4, film.getDuration());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (Film film : films) {
+                        keys.next();
+                        film.setId(keys.getInt(1));
+                    }
+                }
+            }
+            return films;
+        });
+    }
+
     @Override
     public Film updateFilm(Film film) {
         // Обновляем существующий фильм по ID
@@ -65,34 +110,69 @@ public class JdbcFilmStorage implements FilmStorage {
     @Override
     public Collection<Film> getAllFilms() {
         // Получаем все фильмы
-        String sql = "SELECT id, name, description, release_date, duration FROM films";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            Film f = new Film();
-            f.setId(rs.getInt("id"));
-            f.setName(rs.getString("name"));
-            f.setDescription(rs.getString("description"));
-            f.setReleaseDate(rs.getDate("release_date").toLocalDate());
-            f.setDuration(rs.getLong("duration"));
-            return f;
-        });
+        return jdbcTemplate.query(SELECT_FILMS, FILM_ROW_MAPPER);
     }
 
     @Override
     public Film getFilmById(int id) {
         // Получаем один фильм по ID
-        String sql = "SELECT id, name, description, release_date, duration FROM films WHERE id = ?";
+        String sql = SELECT_FILMS + " WHERE id = ?";
         return jdbcTemplate.query(sql, rs -> {
             if (rs.next()) {
-                Film f = new Film();
-                f.setId(rs.getInt("id"));
-                f.setName(rs.getString("name"));
-                f.setDescription(rs.getString("description"));
-                f.setReleaseDate(rs.getDate("release_date").toLocalDate());
-                f.setDuration(rs.getLong("duration"));
-                return f;
+                return FILM_ROW_MAPPER.mapRow(rs, 0);
             } else {
                 throw new NotFoundException("Film with id=" + id + " not found");
             }
         }, id);
     }
-}
\ No newline at end of file
+
+    @Override
+    public Map<Integer, Film> getFilmsByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        // Как и в getExistingFilmIds, набор id уходит одним параметром-массивом вместо IN со списком плейсхолдеров
+        String sql = SELECT_FILMS + " WHERE id = ANY(?)";
+        Map<Integer, Film> found = new HashMap<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            Film film = FILM_ROW_MAPPER.mapRow(rs, rs.getRow());
+            found.put(film.getId(), film);
+        }, (Object) ids.toArray(new Integer[0]));
+        return found;
+    }
+
+    @Override
+    public boolean filmExists(int id) {
+        // Проверяем только наличие ключа, строка целиком не читается
+        String sql = "SELECT EXISTS (SELECT 1 FROM films WHERE id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        // Keyset-пагинация: поиск по первичному ключу вместо OFFSET, цена страницы не зависит от её номера
+        String sql = SELECT_FILMS + " WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, FILM_ROW_MAPPER, afterId, limit);
+    }
+
+    @Override
+    public void streamFilms(Consumer<Film> consumer) {
+        // Строки отдаются получателю по мере чтения ResultSet, список целиком не строится
+        String sql = SELECT_FILMS + " ORDER BY id";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setFetchSize(streamFetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(FILM_ROW_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    @Override
+    public Set<Integer> getExistingFilmIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        // Весь набор передаётся одним параметром-массивом: один запрос и один план при любом размере
+        String sql = "SELECT id FROM films WHERE id = ANY(?)";
+        return new HashSet<>(jdbcTemplate.queryForList(sql, Integer.class, (Object) ids.toArray(new Integer[0])));
+    }
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.storage.jdbc.friend;
+
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.friend.FriendStorage;
+import ru.yandex.practicum.filmorate.storage.jdbc.user.UserRowMapper;
+import ru.yandex.practicum.filmorate.util.IntPairConsumer;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+/**
+ * JDBC-реализация хранилища дружбы поверх таблицы friends.
+ * Для взаимной дружбы хранятся обе направленные записи.
+ * Списки друзей возвращаются одним запросом с join на users, без отдельного запроса на каждого друга.
+ */
+@Repository
+@Primary  // Этот бин будет предпочтительным при автосвязывании FriendStorage
+@Profile("!inmemory")  // В профиле inmemory заменяется in-memory реализацией
+@Timed(value = "filmorate.storage", histogram = true)  // Таймер на каждый метод, теги class и method
+public class JdbcFriendStorage implements FriendStorage {
+    private static final UserRowMapper USER_ROW_MAPPER = new UserRowMapper();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int streamFetchSize;
+
+    public JdbcFriendStorage(JdbcTemplate jdbcTemplate,
+                             @Value("${filmorate.jdbc.stream-fetch-size:500}") int streamFetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    @Override
+    public boolean addFriend(int userId, int friendId) {
+        // Обе записи берутся из join users × users: если кого-то из пользователей нет, строк ноль.
+        // Проверка существования и вставка идут одним запросом, а MERGE не падает на уже существующей паре
+        String sql = "MERGE INTO friends (user_id, friend_id) KEY (user_id, friend_id) "
+                + "SELECT u.id, f.id FROM users u JOIN users f "
+                + "ON (u.id = ? AND f.id = ?) OR (u.id = ? AND f.id = ?)";
+        return jdbcTemplate.update(sql, userId, friendId, friendId, userId) > 0;
+    }
+
+    @Override
+    public void removeFriend(int userId, int friendId) {
+        String sql = "DELETE FROM friends WHERE (user_id = ? AND friend_id = ?) OR (user_id = ? AND friend_id = ?)";
+        jdbcTemplate.update(sql, userId, friendId, friendId, userId);
+    }
+
+    @Override
+    public List<User> getFriends(int userId) {
+        String sql = "SELECT u.id, u.email, u.login, u.name, u.birthday "
+                + "FROM friends f JOIN users u ON u.id = f.friend_id "
+                + "WHERE f.user_id = ? ORDER BY u.id";
+        return jdbcTemplate.query(sql, USER_ROW_MAPPER, userId);
+    }
+
+    @Override
+    public void forEachFriendship(IntPairConsumer consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("SELECT user_id, friend_id FROM friends");
+            ps.setFetchSize(streamFetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getInt(1), rs.getInt(2)));
+    }
+}
@@ -0,0 +1,237 @@
+package ru.yandex.practicum.filmorate.storage.jdbc.like;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
+import ru.yandex.practicum.filmorate.util.IntPairConsumer;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * JDBC-реализация хранилища лайков поверх таблицы likes.
+ * В режиме WRITE_BEHIND изменения схлопываются в памяти (последнее действие по паре
+ * фильм-пользователь побеждает) и пишутся пакетными INSERT/DELETE, когда буфер
+ * достигает batch-size или истекает flush-interval — это и есть граница отставания базы.
+ * Изменение покидает буфер только после успешной записи, так что сбой базы откладывает запись, но не теряет её.
+ * Буфер ограничен max-pending парами: когда он полон, новое изменение сначала сбрасывает буфер на потоке
+ * запроса. Так запросы ждут базу, а если она недоступна, получают ошибку, и буфер не растёт без предела.
+ */
+@Repository
+@Primary  // Этот бин будет предпочтительным при автосвязывании LikeStorage
+@Profile("!inmemory")  // В профиле inmemory заменяется in-memory реализацией
+@Slf4j
+@Timed(value = "filmorate.storage", histogram = true)  // Таймер на каждый метод, теги class и method
+public class JdbcLikeStorage implements LikeStorage, MeterBinder {
+    private static final String INSERT_SQL = "MERGE INTO likes (film_id, user_id) KEY (film_id, user_id) VALUES (?, ?)";
+    private static final String INSERT_AT_SQL =
+            "MERGE INTO likes (film_id, user_id, created_at) KEY (film_id, user_id) VALUES (?, ?, ?)";
+    private static final String DELETE_SQL = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LikeWriteMode writeMode;
+    private final int batchSize;
+    private final int maxPending;
+    private final int streamFetchSize;
+    // Ещё не записанные изменения: ключ — пара (filmId, userId), значение — лайк с его временем или снятие
+    private final Map<Long, Change> pending = new ConcurrentHashMap<>();
+    // Одновременно в базу пишет только один сброс, чтобы не переставить изменения одной пары местами
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+
+    public JdbcLikeStorage(JdbcTemplate jdbcTemplate,
+                           @Value("${filmorate.likes.write-mode:write-behind}") LikeWriteMode writeMode,
+                           @Value("${filmorate.likes.batch-size:500}") int batchSize,
+                           @Value("${filmorate.likes.flush-interval-ms:200}") long flushIntervalMs,
+                           @Value("${filmorate.likes.max-pending:10000}") int maxPending,
+                           @Value("${filmorate.jdbc.stream-fetch-size:500}") int streamFetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeMode = writeMode;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.streamFetchSize = streamFetchSize;
+        if (writeMode == LikeWriteMode.WRITE_BEHIND) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "likes-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    @Override
+    public void addLike(int filmId, int userId) {
+        if (writeMode == LikeWriteMode.SYNC) {
+            jdbcTemplate.update(INSERT_SQL, filmId, userId);
+        } else {
+            // Время берётся в момент лайка, а не сброса буфера
+            enqueue(filmId, userId, new Change(true, System.currentTimeMillis()));
+        }
+    }
+
+    @Override
+    public void addLikes(Collection<FilmLike> likes) {
+        if (writeMode == LikeWriteMode.SYNC) {
+            jdbcTemplate.batchUpdate(INSERT_AT_SQL, likes, batchSize, (ps, like) -> {
+                ps.setInt(1, like.getFilmId());
+                ps.setInt(2, like.getUserId());
+                ps.setTimestamp(3, Timestamp.from(like.getLikedAt()));
+            });
+        } else {
+            likes.forEach(like -> enqueue(like.getFilmId(), like.getUserId(),
+                    new Change(true, like.getLikedAt().toEpochMilli())));
+        }
+    }
+
+    @Override
+    public void removeLike(int filmId, int userId) {
+        if (writeMode == LikeWriteMode.SYNC) {
+            jdbcTemplate.update(DELETE_SQL, filmId, userId);
+        } else {
+            enqueue(filmId, userId, new Change(false, 0));
+        }
+    }
+
+    @Override
+    public void forEachLike(IntPairConsumer consumer) {
+        // Сначала дописываем буфер, чтобы не потерять ещё не сохранённые лайки
+        flush();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement("SELECT film_id, user_id FROM likes");
+            ps.setFetchSize(streamFetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getInt(1), rs.getInt(2)));
+    }
+
+    @Override
+    public void forEachLikeSince(Instant since, LikeTimeConsumer consumer) {
+        flush();
+        // Диапазон по created_at читается по индексу likes_created_at_idx, а не всей таблицей
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "SELECT film_id, user_id, created_at FROM likes WHERE created_at >= ?");
+            ps.setTimestamp(1, Timestamp.from(since));
+            ps.setFetchSize(streamFetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getInt(1), rs.getInt(2), rs.getTimestamp(3).getTime()));
+    }
+
+    @Override
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushScheduled.set(false);
+            if (pending.isEmpty()) {
+                return;
+            }
+            // Буфер разбирается по снимку и очищается только после записи: при ошибке базы изменения
+            // остаются в нём и уходят следующим сбросом, а не теряются
+            Map<Long, Change> batch = new HashMap<>(pending);
+            List<long[]> added = new ArrayList<>();
+            List<long[]> removed = new ArrayList<>();
+            batch.forEach((key, change) -> {
+                if (change.liked()) {
+                    added.add(new long[]{key >>> 32, key & 0xFFFFFFFFL, change.likedAtMillis()});
+                } else {
+                    removed.add(new long[]{key >>> 32, key & 0xFFFFFFFFL});
+                }
+            });
+            writeBatch(DELETE_SQL, removed);
+            writeBatch(INSERT_AT_SQL, added);
+            // remove(key, value) не заберёт изменение, пришедшее уже после снимка:
+            // оно останется в буфере до следующего сброса
+            batch.forEach(pending::remove);
+            log.debug("Сброшено в базу лайков: добавлено {}, удалено {}", added.size(), removed.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Публикует размер буфера ещё не записанных в базу изменений лайков.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.likes.pending", pending, Map::size)
+                .description("Изменения лайков, ожидающие записи в базу")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        flushQuietly();
+    }
+
+    private void enqueue(int filmId, int userId, Change change) {
+        long key = ((long) filmId << 32) | (userId & 0xFFFFFFFFL);
+        // Буфер полон, а пара в нём новая: база не успевает или недоступна. Сбрасываем на потоке запроса;
+        // ошибка базы уходит вызывающему, и изменение не принимается
+        if (pending.size() >= maxPending && !pending.containsKey(key)) {
+            flush();
+        }
+        pending.put(key, change);
+        // Буфер заполнился — не ждём таймера, но и не пишем в базу на потоке запроса
+        if (pending.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void writeBatch(String sql, List<long[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sql, rows, batchSize, (ps, row) -> {
+            ps.setInt(1, (int) row[0]);
+            ps.setInt(2, (int) row[1]);
+            // У вставки третье значение — время лайка
+            if (row.length > 2) {
+                ps.setTimestamp(3, new Timestamp(row[2]));
+            }
+        });
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (DataAccessException e) {
+            log.error("Не удалось записать лайки в базу, {} изменений повторим следующим сбросом", pending.size(), e);
+        }
+    }
+
+    /**
+     * Отложенное изменение пары: лайк со временем в миллисекундах эпохи или снятие лайка.
+     */
+    private record Change(boolean liked, long likedAtMillis) {
+    }
+}
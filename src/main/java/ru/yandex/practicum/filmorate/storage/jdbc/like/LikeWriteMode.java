@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate.storage.jdbc.like;
+
+/**
+ * Режим записи лайков в базу.
+ */
+public enum LikeWriteMode {
+    // Каждый лайк сразу пишется отдельным запросом
+    SYNC,
+    // Лайки копятся в памяти и пишутся пачками по размеру буфера или по таймеру
+    WRITE_BEHIND
+}
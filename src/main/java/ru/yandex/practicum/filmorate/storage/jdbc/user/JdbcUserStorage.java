@@ -1,28 +1,47 @@
 package ru.yandex.practicum.filmorate.storage.jdbc.user;
 
-import org.springframework.context.annotation.Primary;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * JDBC-реализация хранилища пользователей с использованием JdbcTemplate.
  */
 @Repository
-@Primary  // Делает этот бин предпочтительным при автосвязывании UserStorage
+@Profile("!inmemory")  // В профиле inmemory заменяется in-memory реализацией
+@Timed(value = "filmorate.storage", histogram = true)  // Таймер на каждый метод, теги class и method
 public class JdbcUserStorage implements UserStorage {
+    private static final UserRowMapper USER_ROW_MAPPER = new UserRowMapper();
+    private static final String SELECT_USERS = "SELECT id, email, login, name, birthday FROM users";
+
     private final JdbcTemplate jdbcTemplate;
+    private final int streamFetchSize;
 
-    public JdbcUserStorage(JdbcTemplate jdbcTemplate) {
+    public JdbcUserStorage(JdbcTemplate jdbcTemplate,
+                           @Value("${filmorate.jdbc.stream-fetch-size:500}") int streamFetchSize) {
         this.jdbcTemplate = jdbcTemplate;
+        this.streamFetchSize = streamFetchSize;
     }
 
     @Override
@@ -45,6 +64,32 @@ public class JdbcUserStorage implements UserStorage {
         return user;
     }
 
+    @Override
+    @Transactional  // Пакет либо сохраняется целиком, либо откатывается — без частично вставленных строк
+    public List<User> addUsers(List<User> users) {
+        // Все строки уходят одним executeBatch, сгенерированные id читаются в порядке вставки
+        String sql = "INSERT INTO users (email, login, name, birthday) VALUES (?, ?, ?, ?)";
+        return jdbcTemplate.execute((ConnectionCallback<List<User>>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"})) {
+                for (User user : users) {
+                    ps.setString(1, user.getEmail());
+                    ps.setString(2, user.getLogin());
+                    ps.setString(3, user.getName());
+                    ps.setDate(4, Date.valueOf(user.getBirthday()));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (User user : users) {
+                        keys.next();
+                        user.setId(keys.getInt(1));
+                    }
+                }
+            }
+            return users;
+        });
+    }
+
     @Override
     public User updateUser(User user) {
         // Обновляем существующего пользователя по ID
@@ -65,34 +110,69 @@ public class JdbcUserStorage implements UserStorage {
     @Override
     public Collection<User> getAllUsers() {
         // Получаем всех пользователей
-        String sql = "SELECT id, email, login, name, birthday FROM users";
-        return jdbcTemplate.query(sql, (rs, rowNum) -> {
-            User u = new User();
-            u.setId(rs.getInt("id"));
-            u.setEmail(rs.getString("email"));
-            u.setLogin(rs.getString("login"));
-            u.setName(rs.getString("name"));
-            u.setBirthday(rs.getDate("birthday").toLocalDate());
-            return u;
-        });
+        return jdbcTemplate.query(SELECT_USERS, USER_ROW_MAPPER);
     }
 
     @Override
     public User getUserById(int id) {
         // Получаем одного пользователя по ID
-        String sql = "SELECT id, email, login, name, birthday FROM users WHERE id = ?";
+        String sql = SELECT_USERS + " WHERE id = ?";
         return jdbcTemplate.query(sql, rs -> {
             if (rs.next()) {
-                User u = new User();
-                u.setId(rs.getInt("id"));
-                u.setEmail(rs.getString("email"));
-                u.setLogin(rs.getString("login"));
-                u.setName(rs.getString("name"));
-                u.setBirthday(rs.getDate("birthday").toLocalDate());
-                return u;
+                return USER_ROW_MAPPER.mapRow(rs, 0);
             } else {
                 throw new NotFoundException("User with id=" + id + " not found");
             }
         }, id);
     }
+
+    @Override
+    public Map<Integer, User> getUsersByIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        // Как и в getExistingUserIds, набор id уходит одним параметром-массивом вместо IN со списком плейсхолдеров
+        String sql = SELECT_USERS + " WHERE id = ANY(?)";
+        Map<Integer, User> found = new HashMap<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            User user = USER_ROW_MAPPER.mapRow(rs, rs.getRow());
+            found.put(user.getId(), user);
+        }, (Object) ids.toArray(new Integer[0]));
+        return found;
+    }
+
+    @Override
+    public boolean userExists(int id) {
+        // Проверяем только наличие ключа, строка целиком не читается
+        String sql = "SELECT EXISTS (SELECT 1 FROM users WHERE id = ?)";
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class, id));
+    }
+
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        // Keyset-пагинация: поиск по первичному ключу вместо OFFSET, цена страницы не зависит от её номера
+        String sql = SELECT_USERS + " WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, USER_ROW_MAPPER, afterId, limit);
+    }
+
+    @Override
+    public void streamUsers(Consumer<User> consumer) {
+        // Строки отдаются получателю по мере чтения ResultSet, список целиком не строится
+        String sql = SELECT_USERS + " ORDER BY id";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setFetchSize(streamFetchSize);
+            return ps;
+        }, (RowCallbackHandler) rs -> consumer.accept(USER_ROW_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    @Override
+    public Set<Integer> getExistingUserIds(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        // Весь набор передаётся одним параметром-массивом: один запрос и один план при любом размере
+        String sql = "SELECT id FROM users WHERE id = ANY(?)";
+        return new HashSet<>(jdbcTemplate.queryForList(sql, Integer.class, (Object) ids.toArray(new Integer[0])));
+    }
 }
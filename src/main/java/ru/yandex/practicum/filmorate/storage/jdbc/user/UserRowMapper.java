@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage.jdbc.user;
+
+import org.springframework.jdbc.core.RowMapper;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Преобразует строку таблицы users в объект User.
+ * Ожидает колонки id, email, login, name, birthday.
+ */
+public class UserRowMapper implements RowMapper<User> {
+
+    @Override
+    public User mapRow(ResultSet rs, int rowNum) throws SQLException {
+        User u = new User();
+        u.setId(rs.getInt("id"));
+        u.setEmail(rs.getString("email"));
+        u.setLogin(rs.getString("login"));
+        u.setName(rs.getString("name"));
+        u.setBirthday(rs.getDate("birthday").toLocalDate());
+        return u;
+    }
+}
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import io.micrometer.core.annotation.Timed;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.util.IntPairConsumer;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реализация LikeStorage на основе in-memory ConcurrentHashMap.
+ * Для каждого лайка хранится его время, как столбец created_at в JDBC-хранилище.
+ */
+@Component  // Позволяет Spring найти и внедрить это хранилище
+@Profile("inmemory")  // Используется вместо JDBC-хранилища в профиле inmemory
+@Timed(value = "filmorate.storage", histogram = true)  // Таймер на каждый метод, теги class и method
+public class InMemoryLikeStorage implements LikeStorage {
+    // Ключ — id фильма, значение — id поставивших лайк и время лайка в миллисекундах
+    private final Map<Integer, Map<Integer, Long>> likes = new ConcurrentHashMap<>();
+
+    @Override
+    public void addLike(int filmId, int userId) {
+        // Повторный лайк не сдвигает время первого, как MERGE в JDBC-хранилище
+        likes.computeIfAbsent(filmId, k -> new ConcurrentHashMap<>()).putIfAbsent(userId, System.currentTimeMillis());
+    }
+
+    @Override
+    public void addLikes(Collection<FilmLike> likes) {
+        likes.forEach(like -> this.likes.computeIfAbsent(like.getFilmId(), k -> new ConcurrentHashMap<>())
+                .putIfAbsent(like.getUserId(), like.getLikedAt().toEpochMilli()));
+    }
+
+    @Override
+    public void removeLike(int filmId, int userId) {
+        Map<Integer, Long> filmLikes = likes.get(filmId);
+        if (filmLikes != null) {
+            filmLikes.remove(userId);
+        }
+    }
+
+    @Override
+    public void forEachLike(IntPairConsumer consumer) {
+        likes.forEach((filmId, users) -> users.keySet().forEach(userId -> consumer.accept(filmId, userId)));
+    }
+
+    @Override
+    public void forEachLikeSince(Instant since, LikeTimeConsumer consumer) {
+        long sinceMillis = since.toEpochMilli();
+        likes.forEach((filmId, users) -> users.forEach((userId, likedAt) -> {
+            if (likedAt >= sinceMillis) {
+                consumer.accept(filmId, userId, likedAt);
+            }
+        }));
+    }
+
+    @Override
+    public void flush() {
+        // Буфера нет — всё записывается сразу
+    }
+}
@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.storage.like;
+
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.util.IntPairConsumer;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * Интерфейс для хранилища лайков фильмов.
+ * Проверка существования фильма и пользователя остаётся на стороне сервиса.
+ */
+public interface LikeStorage {
+
+    /**
+     * Сохраняет лайк пользователя userId фильму filmId, поставленный сейчас.
+     */
+    void addLike(int filmId, int userId);
+
+    /**
+     * Сохраняет пачку лайков одной пакетной операцией, каждый — со своим временем likedAt (не null).
+     */
+    void addLikes(Collection<FilmLike> likes);
+
+    /**
+     * Удаляет лайк пользователя userId с фильма filmId.
+     */
+    void removeLike(int filmId, int userId);
+
+    /**
+     * Передаёт каждый сохранённый лайк в consumer как пару (filmId, userId).
+     * Лайки не собираются в коллекцию, поэтому память не растёт с размером таблицы.
+     */
+    void forEachLike(IntPairConsumer consumer);
+
+    /**
+     * Передаёт в consumer пару и время каждого лайка, поставленного не раньше since.
+     */
+    void forEachLikeSince(Instant since, LikeTimeConsumer consumer);
+
+    /**
+     * Дописывает в хранилище изменения, накопленные в буфере (если он есть).
+     */
+    void flush();
+
+    /**
+     * Получатель лайка с временем: id фильма, id пользователя и момент лайка в миллисекундах эпохи.
+     */
+    @FunctionalInterface
+    interface LikeTimeConsumer {
+        void accept(int filmId, int userId, long likedAtMillis);
+    }
+}
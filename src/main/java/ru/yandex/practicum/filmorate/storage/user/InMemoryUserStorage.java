@@ -1,5 +1,7 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import io.micrometer.core.annotation.Timed;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
@@ -8,15 +10,24 @@ import ru.yandex.practicum.filmorate.model.User;
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
- * Реализация UserStorage на основе in-memory HashMap.
+ * Реализация UserStorage на основе in-memory ConcurrentSkipListMap.
+ * Чтения не берут блокировок, записи неблокирующие, обход идёт в порядке id.
  */
 @Component  // Позволяет Spring найти и внедрить это хранилище
+@Profile("inmemory")  // Используется вместо JDBC-хранилища в профиле inmemory
+@Timed(value = "filmorate.storage", histogram = true)  // Таймер на каждый метод, теги class и method
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Integer, User> users = new HashMap<>();
+    private final ConcurrentNavigableMap<Integer, User> users = new ConcurrentSkipListMap<>();
     private final AtomicInteger idGen = new AtomicInteger(0);  // Генератор уникальных ID
 
     @Override
@@ -28,21 +39,28 @@ public class InMemoryUserStorage implements UserStorage {
         return user;
     }
 
+    @Override
+    public List<User> addUsers(List<User> newUsers) {
+        newUsers.forEach(this::addUser);
+        return newUsers;
+    }
+
     @Override
     public User updateUser(User user) {
         validate(user);  // Проверяем корректность полей перед обновлением
         int id = user.getId();
-        if (!users.containsKey(id)) {
+        // replace атомарно проверяет наличие и обновляет данные существующего пользователя
+        if (users.replace(id, user) == null) {
             // Если пользователя с таким ID нет в хранилище, выбрасываем NotFoundException
             throw new NotFoundException("User with id=" + id + " not found");
         }
-        users.put(id, user);  // Обновляем данные существующего пользователя
         return user;
     }
 
     @Override
     public Collection<User> getAllUsers() {
-        return users.values();
+        // Отдаём копию, а не живое представление: его нельзя безопасно сериализовать во время записи
+        return List.copyOf(users.values());
     }
 
     @Override
@@ -55,6 +73,43 @@ public class InMemoryUserStorage implements UserStorage {
         return user;
     }
 
+    @Override
+    public Map<Integer, User> getUsersByIds(Collection<Integer> ids) {
+        Map<Integer, User> found = new HashMap<>();
+        for (Integer id : ids) {
+            User user = users.get(id);
+            if (user != null) {
+                found.put(id, user);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public boolean userExists(int id) {
+        return users.containsKey(id);
+    }
+
+    @Override
+    public List<User> getUsersPage(int afterId, int limit) {
+        // tailMap отдаёт элементы строго после afterId уже в порядке id
+        return users.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public void streamUsers(Consumer<User> consumer) {
+        users.values().forEach(consumer);
+    }
+
+    @Override
+    public Set<Integer> getExistingUserIds(Collection<Integer> ids) {
+        return ids.stream()
+                .filter(users::containsKey)
+                .collect(Collectors.toSet());
+    }
+
     // Вспомогательный метод для валидации полей User перед добавлением/обновлением
     private void validate(User user) {
         if (user.getEmail() == null || user.getEmail().isBlank() || !user.getEmail().contains("@")) {
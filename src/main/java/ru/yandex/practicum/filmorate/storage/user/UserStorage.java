@@ -3,6 +3,10 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import ru.yandex.practicum.filmorate.model.User;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Интерфейс для хранилища пользователей.
@@ -17,6 +21,13 @@ public interface UserStorage {
      */
     User addUser(User user);
 
+    /**
+     * Сохраняет пачку новых пользователей одной пакетной операцией.
+     * @param users объекты без id
+     * @return те же объекты в том же порядке, но с присвоенными id
+     */
+    List<User> addUsers(List<User> users);
+
     /**
      * Обновляет данные существующего пользователя.
      * @param user объект пользователя с уже существующим id
@@ -35,4 +46,36 @@ public interface UserStorage {
      * @throws ru.yandex.practicum.filmorate.exception.NotFoundException если пользователь не найден
      */
     User getUserById(int id);
-}
\ No newline at end of file
+
+    /**
+     * Возвращает пользователей с переданными id одним запросом на весь набор.
+     * @param ids идентификаторы в любом порядке, повторы допускаются
+     * @return найденные записи по id; отсутствующих id в результате нет
+     */
+    Map<Integer, User> getUsersByIds(Collection<Integer> ids);
+
+    /**
+     * Проверяет, что пользователь с таким id существует, не загружая его целиком.
+     * @param id идентификатор пользователя
+     */
+    boolean userExists(int id);
+
+    /**
+     * Возвращает страницу пользователей, упорядоченных по id (keyset-пагинация).
+     * @param afterId id последнего элемента предыдущей страницы (0 — с начала)
+     * @param limit максимальный размер страницы
+     */
+    List<User> getUsersPage(int afterId, int limit);
+
+    /**
+     * Передаёт всех пользователей по одному в порядке id, не собирая их в общий список.
+     * @param consumer получатель очередного объекта
+     */
+    void streamUsers(Consumer<User> consumer);
+
+    /**
+     * Возвращает те из переданных id, для которых существуют записи пользователей. Один запрос на весь набор.
+     * @param ids проверяемые идентификаторы
+     */
+    Set<Integer> getExistingUserIds(Collection<Integer> ids);
+}
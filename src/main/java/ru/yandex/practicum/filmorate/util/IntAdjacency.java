@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Списки смежности «id → множество id» для лайков и дружбы.
+ * Смежные id каждого ключа хранятся в сжатой битовой карте IntBitmap, так что ребро занимает
+ * не больше пары байт вместо упакованного Integer и узла ConcurrentHashMap, а пересечения
+ * считаются блоками по 64 id. Операции над одним ключом защищены
+ * блокировкой чтения-записи из фиксированного набора: читатели одного ключа не мешают друг другу,
+ * а блокировки не закрепляют виртуальные потоки, в отличие от synchronized.
+ */
+public class IntAdjacency {
+    private static final int LOCK_STRIPES = 64;
+    private static final int[] EMPTY = new int[0];
+
+    private final ConcurrentHashMap<Integer, IntBitmap> sets = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[LOCK_STRIPES];
+    private final LongAdder edges = new LongAdder();
+
+    public IntAdjacency() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * Добавляет value к ключу key. Возвращает false, если связь уже была.
+     */
+    public boolean add(int key, int value) {
+        ReentrantReadWriteLock.WriteLock lock = lock(key).writeLock();
+        lock.lock();
+        try {
+            boolean added = sets.computeIfAbsent(key, k -> new IntBitmap()).add(value);
+            if (added) {
+                edges.increment();
+            }
+            return added;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Убирает value у ключа key. Возвращает false, если связи не было.
+     */
+    public boolean remove(int key, int value) {
+        ReentrantReadWriteLock.WriteLock lock = lock(key).writeLock();
+        lock.lock();
+        try {
+            IntBitmap set = sets.get(key);
+            boolean removed = set != null && set.remove(value);
+            if (removed) {
+                edges.decrement();
+            }
+            return removed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean contains(int key, int value) {
+        ReentrantReadWriteLock.ReadLock lock = lock(key).readLock();
+        lock.lock();
+        try {
+            IntBitmap set = sets.get(key);
+            return set != null && set.contains(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Число связей ключа key.
+     */
+    public int size(int key) {
+        ReentrantReadWriteLock.ReadLock lock = lock(key).readLock();
+        lock.lock();
+        try {
+            IntBitmap set = sets.get(key);
+            return set == null ? 0 : set.cardinality();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Связи ключа key по возрастанию.
+     */
+    public int[] values(int key) {
+        ReentrantReadWriteLock.ReadLock lock = lock(key).readLock();
+        lock.lock();
+        try {
+            IntBitmap set = sets.get(key);
+            return set == null ? EMPTY : set.toArray();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Общие связи двух ключей по возрастанию.
+     */
+    public int[] intersect(int first, int second) {
+        // Две блокировки одновременно не берутся: ReentrantReadWriteLock ставит читателя в очередь
+        // за ждущим писателем, и встречные пересечения двух ключей сцепились бы через писателей.
+        // Меньшее множество копируется под своей блокировкой, затем пересекается под блокировкой другого
+        boolean firstSmaller = size(first) <= size(second);
+        IntBitmap smaller = copy(firstSmaller ? first : second);
+        if (smaller.isEmpty()) {
+            return EMPTY;
+        }
+        return intersect(firstSmaller ? second : first, smaller);
+    }
+
+    /**
+     * Связи ключа key, входящие в other, по возрастанию.
+     */
+    public int[] intersect(int key, IntBitmap other) {
+        ReentrantReadWriteLock.ReadLock lock = lock(key).readLock();
+        lock.lock();
+        try {
+            IntBitmap set = sets.get(key);
+            return set == null ? EMPTY : set.and(other).toArray();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Копия связей ключа key, которую можно пересекать с другими множествами без блокировок.
+     */
+    public IntBitmap copy(int key) {
+        ReentrantReadWriteLock.ReadLock lock = lock(key).readLock();
+        lock.lock();
+        try {
+            IntBitmap set = sets.get(key);
+            return set == null ? new IntBitmap() : set.copy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Обходит ключи, у которых есть хотя бы одна связь.
+     */
+    public void forEachKey(IntConsumer action) {
+        sets.forEach((key, set) -> {
+            if (size(key) > 0) {
+                action.accept(key);
+            }
+        });
+    }
+
+    /**
+     * Число ключей, для которых заведено множество (включая опустевшие).
+     */
+    public int keyCount() {
+        return sets.size();
+    }
+
+    /**
+     * Общее число связей.
+     */
+    public long edgeCount() {
+        return edges.sum();
+    }
+
+    private ReentrantReadWriteLock lock(int key) {
+        return locks[Math.floorMod(key, LOCK_STRIPES)];
+    }
+}
@@ -0,0 +1,530 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Сжатое множество неотрицательных int по схеме Roaring.
+ * Значения делятся на блоки по старшим 16 битам; блок хранится либо отсортированным массивом
+ * младших 16 бит (до 4096 значений — 2 байта на значение), либо битовой картой на 65536 бит (8 КБ).
+ * Плотные блоки пересекаются по 64 значения за одну операцию AND, разреженные — слиянием
+ * отсортированных массивов, поэтому пересечение двух множеств по миллиону id занимает доли миллисекунды.
+ * Значения обходятся по возрастанию. Не потокобезопасно — синхронизацию обеспечивает владелец (см. IntAdjacency).
+ */
+public class IntBitmap {
+    // Массив, выросший больше этого размера, превращается в битовую карту (и обратно при уменьшении)
+    private static final int ARRAY_LIMIT = 4096;
+    private static final int WORDS = 1024;
+
+    // Старшие 16 бит каждого блока по возрастанию и сами блоки
+    private char[] keys;
+    private Container[] containers;
+    private int blocks;
+    private int cardinality;
+
+    public IntBitmap() {
+        keys = new char[1];
+        containers = new Container[1];
+    }
+
+    private IntBitmap(char[] keys, Container[] containers, int blocks, int cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.blocks = blocks;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Множество из переданных значений.
+     */
+    public static IntBitmap of(int... values) {
+        IntBitmap bitmap = new IntBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    public boolean add(int value) {
+        char high = (char) (value >>> 16);
+        int block = Arrays.binarySearch(keys, 0, blocks, high);
+        if (block < 0) {
+            block = -block - 1;
+            insertBlock(block, high, new ArrayContainer());
+        }
+        Container container = containers[block];
+        int before = container.cardinality();
+        containers[block] = container.add((char) value);
+        if (containers[block].cardinality() == before) {
+            return false;
+        }
+        cardinality++;
+        return true;
+    }
+
+    public boolean remove(int value) {
+        int block = Arrays.binarySearch(keys, 0, blocks, (char) (value >>> 16));
+        if (block < 0) {
+            return false;
+        }
+        Container container = containers[block];
+        int before = container.cardinality();
+        Container updated = container.remove((char) value);
+        if (updated.cardinality() == before) {
+            return false;
+        }
+        cardinality--;
+        if (updated.cardinality() == 0) {
+            removeBlock(block);
+        } else {
+            containers[block] = updated;
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        int block = Arrays.binarySearch(keys, 0, blocks, (char) (value >>> 16));
+        return block >= 0 && containers[block].contains((char) value);
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Пересечение с другим множеством; оба исходных множества не меняются.
+     */
+    public IntBitmap and(IntBitmap other) {
+        int capacity = Math.max(1, Math.min(blocks, other.blocks));
+        char[] resultKeys = new char[capacity];
+        Container[] resultContainers = new Container[capacity];
+        int resultBlocks = 0;
+        int resultCardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < blocks && j < other.blocks) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container common = containers[i].and(other.containers[j]);
+                if (common.cardinality() > 0) {
+                    resultKeys[resultBlocks] = keys[i];
+                    resultContainers[resultBlocks++] = common;
+                    resultCardinality += common.cardinality();
+                }
+                i++;
+                j++;
+            }
+        }
+        return new IntBitmap(resultKeys, resultContainers, resultBlocks, resultCardinality);
+    }
+
+    /**
+     * Добавляет все значения другого множества; other не меняется и не разделяет с этим множеством блоков.
+     */
+    public void addAll(IntBitmap other) {
+        for (int j = 0; j < other.blocks; j++) {
+            int block = Arrays.binarySearch(keys, 0, blocks, other.keys[j]);
+            if (block < 0) {
+                Container copy = other.containers[j].copy();
+                insertBlock(-block - 1, other.keys[j], copy);
+                cardinality += copy.cardinality();
+            } else {
+                int before = containers[block].cardinality();
+                containers[block] = containers[block].or(other.containers[j]);
+                cardinality += containers[block].cardinality() - before;
+            }
+        }
+    }
+
+    /**
+     * Размер пересечения с другим множеством без построения самого пересечения.
+     */
+    public int andCardinality(IntBitmap other) {
+        int result = 0;
+        int i = 0;
+        int j = 0;
+        while (i < blocks && j < other.blocks) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public IntBitmap copy() {
+        Container[] copies = new Container[containers.length];
+        for (int i = 0; i < blocks; i++) {
+            copies[i] = containers[i].copy();
+        }
+        return new IntBitmap(Arrays.copyOf(keys, keys.length), copies, blocks, cardinality);
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < blocks; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * Значения по возрастанию.
+     */
+    public int[] toArray() {
+        int[] result = new int[cardinality];
+        int position = 0;
+        for (int i = 0; i < blocks; i++) {
+            position = containers[i].copyTo(keys[i] << 16, result, position);
+        }
+        return result;
+    }
+
+    private void insertBlock(int block, char high, Container container) {
+        if (blocks == keys.length) {
+            keys = Arrays.copyOf(keys, blocks * 2);
+            containers = Arrays.copyOf(containers, blocks * 2);
+        }
+        System.arraycopy(keys, block, keys, block + 1, blocks - block);
+        System.arraycopy(containers, block, containers, block + 1, blocks - block);
+        keys[block] = high;
+        containers[block] = container;
+        blocks++;
+    }
+
+    private void removeBlock(int block) {
+        System.arraycopy(keys, block + 1, keys, block, blocks - block - 1);
+        System.arraycopy(containers, block + 1, containers, block, blocks - block - 1);
+        containers[--blocks] = null;
+    }
+
+    /**
+     * Блок из 65536 возможных значений. add и remove могут вернуть блок другого вида.
+     */
+    private abstract static class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        // Объединение; может изменить этот блок или вернуть новый, other не меняется
+        abstract Container or(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract Container copy();
+
+        abstract void forEach(int base, IntConsumer action);
+
+        abstract int copyTo(int base, int[] target, int position);
+    }
+
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int size;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        @Override
+        Container add(char value) {
+            int position = Arrays.binarySearch(values, 0, size, value);
+            if (position >= 0) {
+                return this;
+            }
+            if (size == ARRAY_LIMIT) {
+                return toBitmap().add(value);
+            }
+            position = -position - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_LIMIT, Math.max(4, size * 2)));
+            }
+            System.arraycopy(values, position, values, position + 1, size - position);
+            values[position] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int position = Arrays.binarySearch(values, 0, size, value);
+            if (position >= 0) {
+                System.arraycopy(values, position + 1, values, position, size - position - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] common = new char[size];
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                // Слияние двух отсортированных массивов
+                int i = 0;
+                int j = 0;
+                while (i < size && j < array.size) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        common[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(values[i])) {
+                        common[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(common, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.copy().or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            // Слияние двух отсортированных массивов
+            char[] merged = new char[size + array.size];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < array.size) {
+                if (j == array.size || i < size && values[i] < array.values[j]) {
+                    merged[count++] = values[i++];
+                } else if (i == size || values[i] > array.values[j]) {
+                    merged[count++] = array.values[j++];
+                } else {
+                    merged[count++] = values[i++];
+                    j++;
+                }
+            }
+            ArrayContainer result = new ArrayContainer(merged, count);
+            return count > ARRAY_LIMIT ? result.toBitmap() : result;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                int i = 0;
+                int j = 0;
+                while (i < size && j < array.size) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        count++;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(values[i])) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, values.length), size);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(base | values[i]);
+            }
+        }
+
+        @Override
+        int copyTo(int base, int[] target, int position) {
+            for (int i = 0; i < size; i++) {
+                target[position++] = base | values[i];
+            }
+            return position;
+        }
+
+        private BitmapContainer toBitmap() {
+            long[] words = new long[WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, size);
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+                if (cardinality <= ARRAY_LIMIT / 2) {
+                    // Половина порога, чтобы блок на границе не перестраивался туда-обратно на каждом изменении
+                    return toArray();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] common = new long[WORDS];
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                common[i] = words[i] & otherWords[i];
+                count += Long.bitCount(common[i]);
+            }
+            BitmapContainer result = new BitmapContainer(common, count);
+            return count > ARRAY_LIMIT ? result : result.toArray();
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof ArrayContainer array) {
+                for (int i = 0; i < array.size; i++) {
+                    add(array.values[i]);
+                }
+                return this;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                words[i] |= otherWords[i];
+                count += Long.bitCount(words[i]);
+            }
+            cardinality = count;
+            return this;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < WORDS; i++) {
+                count += Long.bitCount(words[i] & otherWords[i]);
+            }
+            return count;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        void forEach(int base, IntConsumer action) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        int copyTo(int base, int[] target, int position) {
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    target[position++] = base | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return position;
+        }
+
+        private ArrayContainer toArray() {
+            char[] values = new char[Math.max(cardinality, 1)];
+            int position = 0;
+            for (int i = 0; i < WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[position++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.yandex.practicum.filmorate.util;
+
+/**
+ * Получатель пары int без упаковки в Integer — для потоковой выгрузки связей «id → id».
+ */
+@FunctionalInterface
+public interface IntPairConsumer {
+    void accept(int first, int second);
+}
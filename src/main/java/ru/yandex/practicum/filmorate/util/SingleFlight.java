@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Схлопывание одинаковых одновременных чтений: первый вызов с ключом (ведущий) выполняет загрузку,
+ * остальные с тем же ключом ждут его результат вместо повторного запроса к хранилищу.
+ * Готовый результат ещё ttl отдаётся без загрузки; ttl = 0 — только совместное ожидание.
+ * Ключ должен включать версию данных: тогда изменение даёт новый ключ, и ttl не отдаёт устаревшее.
+ * Исключение загрузки получают все ждавшие, но оно не запоминается: следующий вызов загружает заново.
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    // Откладывает удаление готового результата на ttl, чтобы старые ключи не копились
+    private final Executor expiry;
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder joined = new LongAdder();
+    private final LongAdder cached = new LongAdder();
+
+    public SingleFlight(Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+        this.expiry = CompletableFuture.delayedExecutor(ttlNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Результат loader для ключа key: свой, общий с уже идущей загрузкой или запомненный не дольше ttl назад.
+     */
+    public V execute(K key, Supplier<V> loader) {
+        while (true) {
+            Flight<V> flight = flights.get(key);
+            if (flight != null) {
+                if (flight.isFresh(ttlNanos)) {
+                    (flight.future.isDone() ? cached : joined).increment();
+                    return await(flight);
+                }
+                // Просроченный результат, ещё не убранный отложенной задачей
+                flights.remove(key, flight);
+                continue;
+            }
+            Flight<V> own = new Flight<>();
+            if (flights.putIfAbsent(key, own) == null) {
+                leaders.increment();
+                return lead(key, own, loader);
+            }
+        }
+    }
+
+    private V lead(K key, Flight<V> own, Supplier<V> loader) {
+        V value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException | Error e) {
+            flights.remove(key, own);
+            own.completedAt = System.nanoTime();
+            own.future.completeExceptionally(e);
+            throw e;
+        }
+        own.completedAt = System.nanoTime();
+        own.future.complete(value);
+        if (ttlNanos > 0) {
+            expiry.execute(() -> flights.remove(key, own));
+        } else {
+            flights.remove(key, own);
+        }
+        return value;
+    }
+
+    // Ждущие получают исключение ведущего как есть, например NotFoundException для ответа 404
+    private V await(Flight<V> flight) {
+        try {
+            return flight.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Вызовы, выполнившие загрузку сами.
+     */
+    public long leaders() {
+        return leaders.sum();
+    }
+
+    /**
+     * Вызовы, дождавшиеся чужой загрузки.
+     */
+    public long joined() {
+        return joined.sum();
+    }
+
+    /**
+     * Вызовы, получившие запомненный результат.
+     */
+    public long cached() {
+        return cached.sum();
+    }
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        // Момент готовности результата; пока загрузка идёт, запись свежая при любом ttl
+        private volatile long completedAt;
+
+        // При ttl = 0 готовая запись ещё видна лишь до её удаления ведущим, и её результат так же свеж
+        boolean isFresh(long ttlNanos) {
+            return !future.isDone() || ttlNanos == 0 || System.nanoTime() - completedAt < ttlNanos;
+        }
+    }
+}
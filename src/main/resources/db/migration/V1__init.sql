@@ -0,0 +1,32 @@
+-- Исходная схема. IF NOT EXISTS позволяет применить миграцию к базе, созданной ещё через schema.sql
+CREATE TABLE IF NOT EXISTS users (
+                       id INT PRIMARY KEY AUTO_INCREMENT,
+                       email VARCHAR(255) NOT NULL,
+                       login VARCHAR(50) NOT NULL,
+                       name VARCHAR(255),
+                       birthday DATE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS films (
+                       id INT PRIMARY KEY AUTO_INCREMENT,
+                       name VARCHAR(255) NOT NULL,
+                       description VARCHAR(1000),
+                       release_date DATE NOT NULL,
+                       duration INT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS friends (
+                         user_id INT NOT NULL,
+                         friend_id INT NOT NULL,
+                         PRIMARY KEY (user_id, friend_id),
+                         FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE,
+                         FOREIGN KEY (friend_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS likes (
+                       film_id INT NOT NULL,
+                       user_id INT NOT NULL,
+                       PRIMARY KEY (film_id, user_id),
+                       FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE,
+                       FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
@@ -0,0 +1,5 @@
+-- Первичные ключи (film_id, user_id) и (user_id, friend_id) покрывают поиск лайков фильма и друзей пользователя.
+-- Обратные направления — лайки пользователя, удаление пользователя с каскадом, «у кого в друзьях»
+-- и соединение общих друзей по friend_id — без этих индексов читают таблицу целиком.
+CREATE INDEX IF NOT EXISTS likes_user_id_idx ON likes (user_id);
+CREATE INDEX IF NOT EXISTS friends_friend_id_idx ON friends (friend_id);
@@ -0,0 +1,6 @@
+-- Время лайка для трендов за час, сутки и неделю. Когда поставлены лайки, существующие до миграции, неизвестно:
+-- они получают начало эпохи и в тренды не попадают. Новым лайкам время ставит значение по умолчанию
+ALTER TABLE likes ADD COLUMN IF NOT EXISTS created_at TIMESTAMP DEFAULT TIMESTAMP '1970-01-01 00:00:00' NOT NULL;
+ALTER TABLE likes ALTER COLUMN created_at SET DEFAULT CURRENT_TIMESTAMP;
+-- При старте из базы читаются только лайки за последнюю неделю
+CREATE INDEX IF NOT EXISTS likes_created_at_idx ON likes (created_at);
@@ -35,7 +35,13 @@ CREATE TABLE friends (
 CREATE TABLE likes (
                        film_id INT NOT NULL,
                        user_id INT NOT NULL,
+                       created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
                        PRIMARY KEY (film_id, user_id),
                        FOREIGN KEY (film_id) REFERENCES films(id) ON DELETE CASCADE,
                        FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+-- Индексы для обратных направлений и окна трендов (те же, что в миграциях V2 и V3 для профиля prod)
+CREATE INDEX likes_user_id_idx ON likes (user_id);
+CREATE INDEX friends_friend_id_idx ON friends (friend_id);
+CREATE INDEX likes_created_at_idx ON likes (created_at);
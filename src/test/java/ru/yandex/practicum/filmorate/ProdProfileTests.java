@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Профиль prod на базе в памяти вместо файла: схему создаёт Flyway, а не schema.sql
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:filmorate-prod;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("prod")
+class ProdProfileTests {
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void contextLoadsWithMigratedSchema() {
+		assertEquals(3, jdbcTemplate.queryForObject(
+				"SELECT COUNT(*) FROM \"flyway_schema_history\" WHERE \"success\" AND \"version\" IS NOT NULL", Integer.class));
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films", Integer.class));
+	}
+
+}
@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
@@ -12,13 +13,25 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.ChangeFeed;
+import ru.yandex.practicum.filmorate.service.ResourceVersions;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.List;
 
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -35,6 +48,15 @@ class FilmControllerTest {
     @Autowired
     private ObjectMapper mapper;
 
+    @Autowired
+    private ChangeFeed feed;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ResourceVersions versions;
+
     @Test
     @Order(1)
     @DisplayName("CRUD-фильма и популярное")
@@ -135,4 +157,591 @@ class FilmControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].id", is(1)));
     }
+
+    @Test
+    @Order(3)
+    @DisplayName("Популярное упорядочено по числу лайков")
+    void popularOrderedByLikes() throws Exception {
+        createFilm("First");
+        createFilm("Second");
+        createFilm("Third");
+        createUser("user1");
+        createUser("user2");
+
+        // у второго фильма два лайка, у третьего один
+        mvc.perform(put("/films/2/like/1")).andExpect(status().isOk());
+        mvc.perform(put("/films/2/like/2")).andExpect(status().isOk());
+        mvc.perform(put("/films/3/like/1")).andExpect(status().isOk());
+        // повторный лайк не должен увеличивать счётчик
+        mvc.perform(put("/films/3/like/1")).andExpect(status().isOk());
+
+        mvc.perform(get("/films/popular?count=3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(2)))
+                .andExpect(jsonPath("$[1].id", is(3)))
+                .andExpect(jsonPath("$[2].id", is(1)));
+
+        // после снятия обоих лайков второй фильм опускается ниже третьего
+        mvc.perform(delete("/films/2/like/1")).andExpect(status().isOk());
+        mvc.perform(delete("/films/2/like/2")).andExpect(status().isOk());
+
+        mvc.perform(get("/films/popular?count=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(3)))
+                .andExpect(jsonPath("$[1].id", is(1)));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Постраничное и потоковое чтение фильмов")
+    void pagedAndStreamedFilms() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            createFilm("Film " + i);
+        }
+
+        // первая страница полная — есть курсор на следующую
+        mvc.perform(get("/films?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", "2"))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is(1)));
+
+        // последняя страница неполная — курсора нет
+        mvc.perform(get("/films?afterId=4&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(5)));
+
+        mvc.perform(get("/films?limit=0"))
+                .andExpect(status().isBadRequest());
+
+        // без параметров по-прежнему возвращается весь список
+        mvc.perform(get("/films"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)));
+
+        MvcResult streamed = mvc.perform(get("/films").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mvc.perform(asyncDispatch(streamed))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.trim().split("\n");
+        assertEquals(5, lines.length);
+        assertEquals(5, mapper.readValue(lines[4], Film.class).getId());
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Пакетная загрузка фильмов с ошибками в отдельных строках")
+    void batchCreateFilms() throws Exception {
+        Film valid = new Film();
+        valid.setName("Valid");
+        valid.setDescription("Desc");
+        valid.setReleaseDate(LocalDate.of(2000, Month.JANUARY, 1));
+        valid.setDuration(100);
+
+        Film invalid = new Film();
+        invalid.setName("");
+        invalid.setDescription("Desc");
+        invalid.setReleaseDate(LocalDate.of(2000, Month.JANUARY, 1));
+        invalid.setDuration(100);
+
+        mvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(List.of(valid, invalid, valid))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created", hasSize(2)))
+                .andExpect(jsonPath("$.created[0].id", is(1)))
+                .andExpect(jsonPath("$.created[1].id", is(2)))
+                .andExpect(jsonPath("$.errors", hasSize(1)))
+                .andExpect(jsonPath("$.errors[0].index", is(1)));
+
+        // NDJSON: строка, которую нельзя разобрать, тоже попадает в ошибки
+        String ndjson = mapper.writeValueAsString(valid) + "\n{broken\n" + mapper.writeValueAsString(valid) + "\n";
+        mvc.perform(post("/films/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created", hasSize(2)))
+                .andExpect(jsonPath("$.created[1].id", is(4)))
+                .andExpect(jsonPath("$.errors[0].index", is(1)));
+
+        // новые фильмы сразу участвуют в рейтинге популярного (count вне снимка считается при запросе)
+        mvc.perform(get("/films/popular?count=5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)));
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("Массовая загрузка лайков")
+    void batchLikes() throws Exception {
+        createFilm("First");
+        createFilm("Second");
+        createUser("user1");
+        createUser("user2");
+
+        List<FilmLike> likes = List.of(
+                new FilmLike(2, 1),
+                new FilmLike(2, 2),
+                new FilmLike(2, 1),     // повтор внутри загрузки
+                new FilmLike(99, 1),    // нет такого фильма
+                new FilmLike(1, 99),    // нет такого пользователя
+                new FilmLike(1, 2));
+        mvc.perform(post("/films/likes/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(likes)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.added", is(3)))
+                .andExpect(jsonPath("$.duplicates", is(1)))
+                .andExpect(jsonPath("$.rejected", hasSize(2)))
+                .andExpect(jsonPath("$.rejected[0].index", is(3)))
+                .andExpect(jsonPath("$.rejected[1].index", is(4)));
+
+        mvc.perform(get("/films/popular?count=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(2)))
+                .andExpect(jsonPath("$[1].id", is(1)));
+
+        // лайки без времени считаются старыми и в тренды не попадают
+        mvc.perform(get("/films/trending?window=7d"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        // время лайка берётся из загрузки; из будущего — отклоняется
+        List<FilmLike> timed = List.of(
+                new FilmLike(1, 1, Instant.now().minus(Duration.ofDays(3))),
+                new FilmLike(2, 1, Instant.now().plus(Duration.ofDays(1))));
+        mvc.perform(post("/films/likes/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(timed)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.added", is(1)))
+                .andExpect(jsonPath("$.rejected", hasSize(1)))
+                .andExpect(jsonPath("$.rejected[0].index", is(1)));
+        mvc.perform(get("/films/trending?window=24h"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+        mvc.perform(get("/films/trending?window=7d"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(1)));
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("Лайки среди выбранных пользователей и среди друзей")
+    void likesIntersections() throws Exception {
+        createFilm("Film");
+        createUser("user1");
+        createUser("user2");
+        createUser("user3");
+        createUser("user4");
+
+        // у user1 друзья user2 и user3; фильм лайкнули user2 и user4
+        mvc.perform(put("/users/1/friends/2")).andExpect(status().isOk());
+        mvc.perform(put("/users/1/friends/3")).andExpect(status().isOk());
+        mvc.perform(put("/films/1/like/2")).andExpect(status().isOk());
+        mvc.perform(put("/films/1/like/4")).andExpect(status().isOk());
+
+        mvc.perform(get("/films/1/likes/common?userIds=4,1,2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is(2)))
+                .andExpect(jsonPath("$[1].id", is(4)));
+
+        mvc.perform(get("/films/1/likes/friends/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(2)));
+
+        // после удаления из друзей user2 больше не попадает в выборку
+        mvc.perform(delete("/users/1/friends/2")).andExpect(status().isOk());
+        mvc.perform(get("/films/1/likes/friends/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        mvc.perform(get("/films/99/likes/friends/1"))
+                .andExpect(status().isNotFound());
+        mvc.perform(get("/films/1/likes/friends/99"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Order(8)
+    @DisplayName("Условный GET: 304 по ETag, пока фильм и рейтинг не менялись")
+    void conditionalGet() throws Exception {
+        // до создания фильма 404 не несёт тега, а тег id до создания не совпадает с тегом созданного фильма
+        String tagBeforeCreate = versions.filmTag(1);
+        mvc.perform(get("/films/1").header("If-None-Match", tagBeforeCreate))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist("ETag"));
+        createFilm("Film");
+        createUser("user");
+        mvc.perform(get("/films/1").header("If-None-Match", tagBeforeCreate))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Film")));
+
+        String filmTag = mvc.perform(get("/films/1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        // count вне снимка: тег идёт от текущей версии рейтинга
+        String popularTag = mvc.perform(get("/films/popular?count=5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(get("/films/1").header("If-None-Match", filmTag))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/films/popular?count=5").header("If-None-Match", popularTag))
+                .andExpect(status().isNotModified());
+
+        // лайк меняет рейтинг, но не сам фильм
+        mvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+        mvc.perform(get("/films/1").header("If-None-Match", filmTag))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/films/popular?count=5").header("If-None-Match", popularTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(popularTag)));
+
+        // обновление фильма меняет его тег
+        Film f = new Film();
+        f.setId(1);
+        f.setName("Renamed");
+        f.setDescription("Desc");
+        f.setReleaseDate(LocalDate.of(2000, Month.JANUARY, 1));
+        f.setDuration(100);
+        mvc.perform(put("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(f)))
+                .andExpect(status().isOk());
+        mvc.perform(get("/films/1").header("If-None-Match", filmTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("Renamed")));
+    }
+
+    @Test
+    @Order(9)
+    @DisplayName("Лента изменений: фильмы и склеенные лайки, возобновление по Last-Event-ID")
+    void changeFeed() throws Exception {
+        MvcResult live = mvc.perform(get("/feed").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        createFilm("Film");
+        createUser("user1");
+        createUser("user2");
+        mvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+        mvc.perform(put("/films/1/like/2")).andExpect(status().isOk());
+        feed.publishLikes();
+
+        String stream = awaitContent(live, "LIKES_CHANGED");
+        assertTrue(stream.contains("event:FILM_CREATED"));
+        // два лайка подряд приходят одним событием
+        assertTrue(stream.contains("\"likedBy\":[1,2]"));
+
+        // переподключение с токеном первого события отдаёт всё, что было после него
+        String firstToken = stream.lines()
+                .filter(line -> line.startsWith("id:"))
+                .findFirst().orElseThrow()
+                .substring("id:".length());
+        MvcResult resumed = mvc.perform(get("/feed").header("Last-Event-ID", firstToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String replay = awaitContent(resumed, "LIKES_CHANGED");
+        assertFalse(replay.contains("FILM_CREATED"));
+
+        // токен, которого нет в журнале, требует перестроить представление
+        MvcResult unknown = mvc.perform(get("/feed").header("Last-Event-ID", "unknown-1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitContent(unknown, "event:RESYNC");
+    }
+
+    @Test
+    @Order(10)
+    @DisplayName("Тренды за окно: только фильмы с лайками в окне")
+    void trending() throws Exception {
+        createFilm("Old");
+        createFilm("New");
+        createUser("user1");
+        createUser("user2");
+        mvc.perform(put("/films/2/like/1")).andExpect(status().isOk());
+        mvc.perform(put("/films/2/like/2")).andExpect(status().isOk());
+        mvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+
+        for (String window : List.of("1h", "24h", "7d")) {
+            mvc.perform(get("/films/trending?window=" + window))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(2)))
+                    .andExpect(jsonPath("$[0].id", is(2)))
+                    .andExpect(jsonPath("$[1].id", is(1)));
+        }
+
+        // снятый лайк уходит и из трендов
+        mvc.perform(delete("/films/1/like/1")).andExpect(status().isOk());
+        mvc.perform(get("/films/trending?window=1h&count=5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(2)));
+
+        mvc.perform(get("/films/trending?window=1y"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(11)
+    @DisplayName("Поиск по названию и описанию: префиксы, все слова, ранжирование")
+    void search() throws Exception {
+        createFilm("The Matrix", "Хакер узнаёт правду о мире");
+        createFilm("Ёжик в тумане", "Мультфильм о ёжике и лошади");
+        createFilm("Documentary", "Making of the matrix trilogy");
+
+        // совпадение в названии выше совпадения в описании
+        mvc.perform(get("/films/search?q=matr"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[1].id", is(3)));
+
+        // все слова запроса должны найтись; регистр и ё не важны
+        mvc.perform(get("/films/search?q=ЕЖИК туман"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(2)));
+        mvc.perform(get("/films/search?q=matrix ёжик"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        // после обновления фильм ищется по новому названию и не ищется по старому
+        Film renamed = new Film();
+        renamed.setId(1);
+        renamed.setName("Reloaded");
+        renamed.setDescription("Sequel");
+        renamed.setReleaseDate(LocalDate.of(2003, Month.MAY, 15));
+        renamed.setDuration(138);
+        mvc.perform(put("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(renamed)))
+                .andExpect(status().isOk());
+        mvc.perform(get("/films/search?q=matrix"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(3)));
+        mvc.perform(get("/films/search?q=reload"))
+                .andExpect(jsonPath("$[0].id", is(1)));
+
+        mvc.perform(get("/films/search?q= "))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(12)
+    @DisplayName("Выборка по диапазонам даты и продолжительности, минимуму лайков, с сортировкой")
+    void filter() throws Exception {
+        createFilm("A", "Desc", LocalDate.of(1985, 5, 1), 90);
+        createFilm("B", "Desc", LocalDate.of(1995, 3, 10), 110);
+        createFilm("C", "Desc", LocalDate.of(1999, 12, 31), 150);
+        createFilm("D", "Desc", LocalDate.of(1992, 7, 7), 130);
+        createFilm("E", "Desc", LocalDate.of(2005, 1, 1), 95);
+        createUser("user1");
+        createUser("user2");
+        mvc.perform(put("/films/4/like/1")).andExpect(status().isOk());
+        mvc.perform(put("/films/4/like/2")).andExpect(status().isOk());
+        mvc.perform(put("/films/2/like/1")).andExpect(status().isOk());
+        mvc.perform(put("/films/3/like/1")).andExpect(status().isOk());
+
+        String nineties = "/films?releasedFrom=1990-01-01&releasedTo=2000-12-31";
+        // по умолчанию — по лайкам, при равенстве меньший id раньше
+        mvc.perform(get(nineties))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", is(List.of(4, 2, 3))));
+        mvc.perform(get(nineties + "&sort=duration"))
+                .andExpect(jsonPath("$[*].id", is(List.of(2, 4, 3))));
+        mvc.perform(get("/films?minLikes=1&limit=2"))
+                .andExpect(jsonPath("$[*].id", is(List.of(4, 2))));
+        mvc.perform(get("/films?minDuration=100&maxDuration=140&sort=releaseDate"))
+                .andExpect(jsonPath("$[*].id", is(List.of(4, 2))));
+        mvc.perform(get(nineties + "&minDuration=100&maxDuration=140&minLikes=2"))
+                .andExpect(jsonPath("$[*].id", is(List.of(4))));
+
+        // обновлённый фильм переезжает в индексе продолжительности
+        Film longer = new Film();
+        longer.setId(4);
+        longer.setName("D");
+        longer.setDescription("Desc");
+        longer.setReleaseDate(LocalDate.of(1992, 7, 7));
+        longer.setDuration(200);
+        mvc.perform(put("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(longer)))
+                .andExpect(status().isOk());
+        mvc.perform(get("/films?maxDuration=140&sort=duration"))
+                .andExpect(jsonPath("$[*].id", is(List.of(1, 5, 2))));
+
+        mvc.perform(get("/films?releasedFrom=2001-01-01&releasedTo=2000-01-01"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/films?sort=name"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/films?afterId=1&minLikes=1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(13)
+    @DisplayName("Фильмы по списку id: порядок запроса, ненайденные — в заголовке")
+    void filmsByIds() throws Exception {
+        createFilm("f1");
+        createFilm("f2");
+        createFilm("f3");
+
+        mvc.perform(get("/films?ids=2,7,3,5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", is(List.of(2, 3))))
+                .andExpect(header().string("X-Missing-Ids", "7,5"));
+        // повторно — уже из кэша, результат тот же
+        mvc.perform(get("/films?ids=3,1"))
+                .andExpect(jsonPath("$[*].id", is(List.of(3, 1))))
+                .andExpect(header().doesNotExist("X-Missing-Ids"));
+        mvc.perform(get("/films?ids="))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(14)
+    @DisplayName("Повторное чтение фильма берётся из SingleFlight, изменение даёт новый ключ")
+    void singleFlightReads() throws Exception {
+        createFilm("Before");
+        mvc.perform(get("/films/1")).andExpect(jsonPath("$.name", is("Before")));
+        mvc.perform(get("/films/1")).andExpect(jsonPath("$.name", is("Before")));
+        assertEquals(1.0, singleFlightCalls("films", "leader"));
+        assertEquals(1.0, singleFlightCalls("films", "cached"));
+
+        Film renamed = new Film();
+        renamed.setId(1);
+        renamed.setName("After");
+        renamed.setDescription("Desc");
+        renamed.setReleaseDate(LocalDate.of(2000, Month.JANUARY, 1));
+        renamed.setDuration(100);
+        mvc.perform(put("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(renamed)))
+                .andExpect(status().isOk());
+        // ttl в тестах — час, но версия фильма поднялась, и чтение идёт в хранилище
+        mvc.perform(get("/films/1")).andExpect(jsonPath("$.name", is("After")));
+        assertEquals(2.0, singleFlightCalls("films", "leader"));
+
+        // отсутствие не запоминается
+        mvc.perform(get("/films/2")).andExpect(status().isNotFound());
+        createFilm("Second");
+        mvc.perform(get("/films/2")).andExpect(status().isOk());
+    }
+
+    @Test
+    @Order(15)
+    @DisplayName("Снимок популярных: готовый JSON, перестроение в фоне только после изменения рейтинга")
+    void popularSnapshots() throws Exception {
+        createFilm("f1");
+        createFilm("f2");
+        createUser("user1");
+        mvc.perform(put("/films/2/like/1")).andExpect(status().isOk());
+
+        // чтение не ждёт перестроения: отдаёт снимок, построенный при старте, и просит фон обновить его
+        String startupTag = mvc.perform(get("/films/popular?count=10"))
+                .andExpect(jsonPath("$", hasSize(0)))
+                .andReturn().getResponse().getHeader("ETag");
+        awaitPopular(10, "[2,1]");
+        double refreshes = snapshotRefreshes();
+        mvc.perform(get("/films/popular?count=10").header("If-None-Match", startupTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(startupTag)));
+        // рейтинг не менялся — снимок тот же
+        mvc.perform(get("/films/popular?count=20"))
+                .andExpect(jsonPath("$[*].id", is(List.of(2, 1))));
+        assertEquals(refreshes, snapshotRefreshes());
+
+        // count вне снимка считается по рейтингу при запросе и совпадает с ним
+        mvc.perform(get("/films/popular?count=1"))
+                .andExpect(jsonPath("$[*].id", is(List.of(2))));
+
+        mvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+        mvc.perform(delete("/films/2/like/1")).andExpect(status().isOk());
+        mvc.perform(get("/films/popular?count=1"))
+                .andExpect(jsonPath("$[*].id", is(List.of(1))));
+        awaitPopular(10, "[1,2]");
+        assertTrue(snapshotRefreshes() > refreshes);
+    }
+
+    // Снимок обновляется фоновым потоком: ждём, пока чтение не вернёт ожидаемый порядок id
+    private void awaitPopular(int count, String expectedIds) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String ids = popularIds(count);
+        while (!ids.equals(expectedIds) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            ids = popularIds(count);
+        }
+        assertEquals(expectedIds, ids);
+    }
+
+    private String popularIds(int count) throws Exception {
+        String json = mvc.perform(get("/films/popular?count=" + count))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return mapper.readTree(json).findValuesAsText("id").toString().replace(" ", "");
+    }
+
+    private double snapshotRefreshes() {
+        return meterRegistry.get("filmorate.popular.snapshot.refreshes").functionCounter().count();
+    }
+
+    private double singleFlightCalls(String name, String outcome) {
+        return meterRegistry.get("filmorate.single-flight.calls")
+                .tag("name", name)
+                .tag("outcome", outcome)
+                .functionCounter()
+                .count();
+    }
+
+    private void createFilm(String name) throws Exception {
+        createFilm(name, "Desc");
+    }
+
+    private void createFilm(String name, String description) throws Exception {
+        createFilm(name, description, LocalDate.of(2000, Month.JANUARY, 1), 100);
+    }
+
+    private void createFilm(String name, String description, LocalDate releaseDate, long duration) throws Exception {
+        Film f = new Film();
+        f.setName(name);
+        f.setDescription(description);
+        f.setReleaseDate(releaseDate);
+        f.setDuration(duration);
+        mvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(f)))
+                .andExpect(status().isOk());
+    }
+
+    private void createUser(String login) throws Exception {
+        User u = new User();
+        u.setEmail(login + "@b.com");
+        u.setLogin(login);
+        u.setBirthday(LocalDate.of(1990, 1, 1));
+        mvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(u)))
+                .andExpect(status().isOk());
+    }
+
+    private String awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = result.getResponse().getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            content = result.getResponse().getContentAsString();
+        }
+        assertTrue(content.contains(expected), content);
+        return content;
+    }
 }
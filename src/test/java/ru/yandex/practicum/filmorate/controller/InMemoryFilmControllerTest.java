@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.test.context.ActiveProfiles;
+
+// Те же сценарии на in-memory хранилищах вместо JDBC
+@ActiveProfiles("inmemory")
+class InMemoryFilmControllerTest extends FilmControllerTest {
+}
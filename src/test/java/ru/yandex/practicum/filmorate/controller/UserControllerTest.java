@@ -12,7 +12,9 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.film.RecommendationService;
 
 import java.time.LocalDate;
 
@@ -33,6 +35,9 @@ class UserControllerTest {
     @Autowired
     private ObjectMapper mapper;
 
+    @Autowired
+    private RecommendationService recommendationService;
+
     @Test
     @Order(1)
     @DisplayName("Создание, получение и обновление пользователя")
@@ -96,6 +101,13 @@ class UserControllerTest {
         // добавить в друзья u1 → u2
         mvc.perform(put("/users/1/friends/2"))
                 .andExpect(status().isOk());
+        // повторное добавление не ошибка, несуществующий пользователь — 404 без записи в друзья
+        mvc.perform(put("/users/1/friends/2"))
+                .andExpect(status().isOk());
+        mvc.perform(put("/users/1/friends/99"))
+                .andExpect(status().isNotFound());
+        mvc.perform(put("/users/99/friends/1"))
+                .andExpect(status().isNotFound());
 
         // список друзей u1
         mvc.perform(get("/users/1/friends"))
@@ -115,5 +127,126 @@ class UserControllerTest {
         mvc.perform(get("/users/1/friends"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$", hasSize(0)));
+
+        // удалить того, кого нет в друзьях, можно; несуществующего пользователя — нельзя
+        mvc.perform(delete("/users/1/friends/2"))
+                .andExpect(status().isOk());
+        mvc.perform(delete("/users/1/friends/99"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("Общие друзья считаются по обоим спискам")
+    void commonFriends() throws Exception {
+        createUser("u1");
+        createUser("u2");
+        createUser("u3");
+        createUser("u4");
+
+        // у u1 и u2 общий друг u3; u4 дружит только с u1
+        mvc.perform(put("/users/1/friends/3")).andExpect(status().isOk());
+        mvc.perform(put("/users/2/friends/3")).andExpect(status().isOk());
+        mvc.perform(put("/users/1/friends/4")).andExpect(status().isOk());
+
+        mvc.perform(get("/users/1/friends"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is(3)))
+                .andExpect(jsonPath("$[1].id", is(4)));
+
+        mvc.perform(get("/users/1/friends/common/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(3)));
+
+        // несуществующий пользователь
+        mvc.perform(get("/users/1/friends/common/99"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("Рекомендации по похожим лайкам")
+    void recommendations() throws Exception {
+        createUser("u1");
+        createUser("u2");
+        createUser("u3");
+        createFilm("f1");
+        createFilm("f2");
+        createFilm("f3");
+        createFilm("f4");
+
+        // u2 разделяет оба лайка u1, u3 — только один; u1 ещё не видел f3 и f4
+        mvc.perform(put("/films/1/like/1")).andExpect(status().isOk());
+        mvc.perform(put("/films/2/like/1")).andExpect(status().isOk());
+        mvc.perform(put("/films/1/like/2")).andExpect(status().isOk());
+        mvc.perform(put("/films/2/like/2")).andExpect(status().isOk());
+        mvc.perform(put("/films/3/like/2")).andExpect(status().isOk());
+        mvc.perform(put("/films/1/like/3")).andExpect(status().isOk());
+        mvc.perform(put("/films/4/like/3")).andExpect(status().isOk());
+        recommendationService.refresh();
+
+        mvc.perform(get("/users/1/recommendations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is(3)))
+                .andExpect(jsonPath("$[1].id", is(4)));
+
+        mvc.perform(get("/users/1/recommendations?count=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)));
+
+        // Лайки u1 не менялись, но у f4 выросли совместные лайки с его фильмами — u1 пересчитан
+        mvc.perform(put("/films/4/like/2")).andExpect(status().isOk());
+        recommendationService.refresh();
+        mvc.perform(get("/users/1/recommendations"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(4)))
+                .andExpect(jsonPath("$[1].id", is(3)));
+
+        mvc.perform(get("/users/99/recommendations"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("Пользователи по списку id: порядок запроса, ненайденные — в заголовке")
+    void usersByIds() throws Exception {
+        createUser("u1");
+        createUser("u2");
+        createUser("u3");
+
+        mvc.perform(get("/users?ids=3,99,1,3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].id", contains(3, 1)))
+                .andExpect(header().string("X-Missing-Ids", "99"));
+        mvc.perform(get("/users?ids=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].login", is("u2")))
+                .andExpect(header().doesNotExist("X-Missing-Ids"));
+    }
+
+    private void createFilm(String name) throws Exception {
+        Film f = new Film();
+        f.setName(name);
+        f.setDescription("desc");
+        f.setReleaseDate(LocalDate.of(2000, 1, 1));
+        f.setDuration(100);
+        mvc.perform(post("/films")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(f)))
+                .andExpect(status().isOk());
+    }
+
+    private void createUser(String login) throws Exception {
+        User u = new User();
+        u.setEmail(login + "@b.com");
+        u.setLogin(login);
+        u.setBirthday(LocalDate.of(2000, 1, 1));
+        mvc.perform(post("/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(u)))
+                .andExpect(status().isOk());
     }
 }
@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpLogSamplerTest {
+
+    @Test
+    @DisplayName("Долю задаёт первое подходящее правило, без совпадений — доля по умолчанию")
+    void firstMatchingRuleWins() {
+        HttpLogSampler sampler = new HttpLogSampler(1.0, false, " /films/popular = 0 , /films/** =1, /users/**=0.0");
+
+        assertFalse(sampler.shouldLog("/films/popular", 200));
+        assertTrue(sampler.shouldLog("/films/1", 200));
+        assertFalse(sampler.shouldLog("/users/1/friends", 200));
+        assertTrue(sampler.shouldLog("/feed", 200));
+    }
+
+    @Test
+    @DisplayName("Ошибки логируются всегда, только если это включено")
+    void errorsBypassSampling() {
+        assertTrue(new HttpLogSampler(0.0, true, "").shouldLog("/films", 404));
+        assertTrue(new HttpLogSampler(0.0, true, "").shouldLog("/films", 500));
+        assertFalse(new HttpLogSampler(0.0, true, "").shouldLog("/films", 200));
+        assertFalse(new HttpLogSampler(0.0, false, null).shouldLog("/films", 500));
+    }
+
+    @Test
+    @DisplayName("Дробная доля пропускает примерно такую часть обменов")
+    void fractionalRate() {
+        HttpLogSampler sampler = new HttpLogSampler(0.0, false, "/films/**=0.25");
+        int logged = 0;
+        for (int i = 0; i < 20_000; i++) {
+            if (sampler.shouldLog("/films/1", 200)) {
+                logged++;
+            }
+        }
+        // Ожидается 5000, стандартное отклонение около 61
+        assertTrue(logged > 4_500 && logged < 5_500, "logged=" + logged);
+    }
+
+    @Test
+    @DisplayName("Правило без доли или с лишним '=' отклоняется при старте")
+    void invalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> new HttpLogSampler(1.0, true, "/films/**"));
+        assertThrows(IllegalArgumentException.class, () -> new HttpLogSampler(1.0, true, "/films=0.1=0.2"));
+        assertThrows(NumberFormatException.class, () -> new HttpLogSampler(1.0, true, "/films=часто"));
+    }
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.util.IntAdjacency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoLikeIndexTest {
+
+    @Test
+    @DisplayName("Оценка — сумма совместных лайков с фильмами пользователя, свои фильмы не рекомендуются")
+    void recommendsByCoLikes() {
+        CoLikeIndex index = new CoLikeIndex(Integer.MAX_VALUE);
+        // u2 разделяет оба лайка u1, u3 — только один; u1 ещё не видел f3 и f4
+        index.likeAdded(1, 1);
+        index.likeAdded(2, 1);
+        index.likeAdded(1, 2);
+        index.likeAdded(2, 2);
+        index.likeAdded(3, 2);
+        index.likeAdded(1, 3);
+        index.likeAdded(4, 3);
+
+        CoLikeIndex.CoLikes scratch = index.newScratch();
+        assertArrayEquals(new int[]{3, 4}, index.recommend(1, 10, Integer.MAX_VALUE, scratch));
+        assertArrayEquals(new int[]{3}, index.recommend(1, 1, Integer.MAX_VALUE, scratch));
+        // f1 лайкнули трое: при пороге 2 его строка не учитывается, f4 остаётся без оценки
+        assertArrayEquals(new int[]{3}, index.recommend(1, 10, 2, scratch));
+
+        index.likeRemoved(3, 2);
+        assertArrayEquals(new int[]{4}, index.recommend(1, 10, Integer.MAX_VALUE, scratch));
+    }
+
+    @Test
+    @DisplayName("Изменения копятся до drainChanges: пользователь и фильмы с изменившимися счётчиками")
+    void drainChanges() {
+        CoLikeIndex index = new CoLikeIndex(Integer.MAX_VALUE);
+        index.likeAdded(1, 1);
+        index.likeAdded(2, 1);
+        index.likeAdded(5, 2);
+
+        CoLikeIndex.Changes changes = index.drainChanges();
+        assertArrayEquals(new int[]{1, 2}, changes.users().toArray());
+        assertArrayEquals(new int[]{1, 2, 5}, changes.films().toArray());
+        assertTrue(index.drainChanges().isEmpty());
+
+        // Повторный лайк ничего не меняет
+        index.likeAdded(1, 1);
+        assertTrue(index.drainChanges().isEmpty());
+
+        index.likeRemoved(2, 1);
+        changes = index.drainChanges();
+        assertArrayEquals(new int[]{1}, changes.users().toArray());
+        assertArrayEquals(new int[]{1, 2}, changes.films().toArray());
+    }
+
+    @Test
+    @DisplayName("Пары пользователя сверх предела лайков не считаются, пока он не вернётся под предел")
+    void userLikesCap() {
+        CoLikeIndex index = new CoLikeIndex(2);
+        index.likeAdded(1, 1);
+        index.likeAdded(2, 1);
+        index.likeAdded(1, 2);
+
+        CoLikeIndex.CoLikes scratch = index.newScratch();
+        assertArrayEquals(new int[]{2}, index.recommend(2, 10, Integer.MAX_VALUE, scratch));
+
+        // Третий лайк u1 выводит его за предел: пара f1–f2 исчезает
+        index.likeAdded(3, 1);
+        assertArrayEquals(new int[]{}, index.recommend(2, 10, Integer.MAX_VALUE, scratch));
+        index.drainChanges();
+
+        index.likeRemoved(3, 1);
+        assertArrayEquals(new int[]{2}, index.recommend(2, 10, Integer.MAX_VALUE, scratch));
+        assertArrayEquals(new int[]{1, 2, 3}, index.drainChanges().films().toArray());
+    }
+
+    @Test
+    @DisplayName("Счётчики после лайков и их снятия совпадают с построенными заново")
+    void incrementalMatchesLoad() {
+        incrementalMatchesLoad(Integer.MAX_VALUE);
+        // С низким пределом пользователи часто переходят его в обе стороны
+        incrementalMatchesLoad(3);
+    }
+
+    private static void incrementalMatchesLoad(int maxUserLikes) {
+        int users = 300;
+        int films = 500;
+        CoLikeIndex incremental = new CoLikeIndex(maxUserLikes);
+        IntAdjacency likes = new IntAdjacency();
+        List<int[]> liked = new ArrayList<>();
+        Random random = new Random(7);
+        // Лайков мало, и снимаются уже поставленные: счётчики часто доходят до нуля и удаляются из таблиц
+        for (int i = 0; i < 20_000; i++) {
+            if (liked.size() > 1000 && random.nextInt(2) == 0) {
+                int[] pair = liked.set(random.nextInt(liked.size()), liked.get(liked.size() - 1));
+                liked.remove(liked.size() - 1);
+                likes.remove(pair[0], pair[1]);
+                incremental.likeRemoved(pair[0], pair[1]);
+            } else {
+                int filmId = 1 + random.nextInt(films);
+                int userId = 1 + random.nextInt(users);
+                if (likes.add(filmId, userId)) {
+                    liked.add(new int[]{filmId, userId});
+                }
+                incremental.likeAdded(filmId, userId);
+            }
+        }
+        CoLikeIndex loaded = new CoLikeIndex(maxUserLikes);
+        loaded.load(likes);
+
+        assertArrayEquals(loaded.users(), incremental.users());
+        CoLikeIndex.CoLikes scratch = incremental.newScratch();
+        for (int userId = 1; userId <= users; userId++) {
+            assertArrayEquals(loaded.recommend(userId, films, Integer.MAX_VALUE, scratch),
+                    incremental.recommend(userId, films, Integer.MAX_VALUE, scratch), "user " + userId);
+        }
+    }
+}
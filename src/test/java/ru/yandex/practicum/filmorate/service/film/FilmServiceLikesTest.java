@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.service.ChangeFeed;
+import ru.yandex.practicum.filmorate.service.ResourceVersions;
+import ru.yandex.practicum.filmorate.service.SingleFlights;
+import ru.yandex.practicum.filmorate.service.user.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class FilmServiceLikesTest {
+    private final LikeStorage likeStorage = mock(LikeStorage.class);
+    private final FilmPopularityIndex popularityIndex = mock(FilmPopularityIndex.class);
+    private final CoLikeIndex coLikeIndex = mock(CoLikeIndex.class);
+    private final ChangeFeed feed = mock(ChangeFeed.class);
+    private FilmService service;
+
+    @BeforeEach
+    void setUp() {
+        FilmStorage filmStorage = mock(FilmStorage.class);
+        UserStorage userStorage = mock(UserStorage.class);
+        when(filmStorage.filmExists(anyInt())).thenReturn(true);
+        when(userStorage.userExists(anyInt())).thenReturn(true);
+        when(filmStorage.getExistingFilmIds(anyCollection())).thenReturn(Set.of(1));
+        when(userStorage.getExistingUserIds(anyCollection())).thenReturn(Set.of(1, 2));
+        service = new FilmService(filmStorage, userStorage, likeStorage, mock(UserService.class), popularityIndex,
+                mock(TrendingIndex.class), coLikeIndex, mock(FilmSearchIndex.class), mock(FilmFilterIndex.class),
+                mock(ResourceVersions.class), feed, mock(SingleFlights.class), 500);
+    }
+
+    @Test
+    @DisplayName("Лайк, который хранилище не записало, не попадает в индексы, и повтор записывает его")
+    void failedLikeWriteLeavesIndexesUntouched() {
+        doThrow(new DataAccessResourceFailureException("База недоступна"))
+                .doNothing()
+                .when(likeStorage).addLike(1, 1);
+
+        assertThrows(DataAccessException.class, () -> service.addLike(1, 1));
+        assertFalse(service.likesGraph().contains(1, 1));
+        verifyNoInteractions(popularityIndex, coLikeIndex, feed);
+
+        service.addLike(1, 1);
+        assertTrue(service.likesGraph().contains(1, 1));
+        verify(likeStorage, times(2)).addLike(1, 1);
+        verify(popularityIndex).increment(1);
+        verify(feed).likeAdded(1, 1);
+    }
+
+    @Test
+    @DisplayName("Снятие лайка, не записанное хранилищем, оставляет лайк в памяти")
+    void failedUnlikeWriteKeepsLike() {
+        service.addLike(1, 1);
+        doThrow(new DataAccessResourceFailureException("База недоступна")).when(likeStorage).removeLike(1, 1);
+
+        assertThrows(DataAccessException.class, () -> service.removeLike(1, 1));
+        assertTrue(service.likesGraph().contains(1, 1));
+        verify(popularityIndex, never()).decrement(anyInt());
+    }
+
+    @Test
+    @DisplayName("Пачка, которую хранилище не записало, при повторе добавляется целиком, а не считается повторами")
+    void failedBatchWriteIsRetried() {
+        List<FilmLike> batch = List.of(new FilmLike(1, 1), new FilmLike(1, 2));
+        doThrow(new DataAccessResourceFailureException("База недоступна"))
+                .doNothing()
+                .when(likeStorage).addLikes(anyCollection());
+
+        assertThrows(DataAccessException.class, () -> service.addLikes(batch));
+        assertEquals(0, service.likesGraph().size(1));
+        verifyNoInteractions(popularityIndex, coLikeIndex, feed);
+
+        assertEquals(2, service.addLikes(batch).getAdded());
+        assertEquals(2, service.likesGraph().size(1));
+        verify(popularityIndex).add(1, 2);
+        verify(coLikeIndex).likeAdded(1, 2);
+    }
+}
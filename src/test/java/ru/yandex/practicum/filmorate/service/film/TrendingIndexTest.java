@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.service.film;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrendingIndexTest {
+    private final TrendingIndex index = new TrendingIndex();
+
+    @AfterEach
+    void tearDown() {
+        index.shutdown();
+    }
+
+    @Test
+    @DisplayName("Снятый лайк вычитается из своей корзины, а не из самой свежей")
+    void removesFromOwnBucket() {
+        long now = System.currentTimeMillis();
+        index.likeAdded(1, 1, now - Duration.ofHours(2).toMillis());
+        index.likeAdded(1, 2, now);
+        assertEquals(List.of(1), index.top(TrendingWindow.HOUR, 10));
+
+        // Лайк двухчасовой давности уходит из суток, но не из последнего часа
+        index.likeRemoved(1, 1);
+        assertEquals(List.of(1), index.top(TrendingWindow.HOUR, 10));
+        index.likeRemoved(1, 2);
+        assertEquals(List.of(), index.top(TrendingWindow.DAY, 10));
+    }
+
+    @Test
+    @DisplayName("Снятие лайка старше всех окон тренды не меняет")
+    void ignoresOldLikes() {
+        long now = System.currentTimeMillis();
+        index.likeAdded(1, 1, now - Duration.ofDays(30).toMillis());
+        index.likeAdded(1, 2, now);
+        index.likeAdded(2, 1, now);
+        index.likeAdded(2, 2, now - Duration.ofDays(2).toMillis());
+
+        index.likeRemoved(1, 1);
+        // У обоих фильмов по лайку в последнем часе, у второго ещё один за неделю
+        assertEquals(List.of(1, 2), index.top(TrendingWindow.HOUR, 10));
+        assertEquals(List.of(2, 1), index.top(TrendingWindow.WEEK, 10));
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.jdbc.film.JdbcFilmStorage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class CachingFilmStorageTest {
+
+    @Test
+    @DisplayName("Пакетная дочитка не кладёт в кэш версию, обновлённую во время чтения")
+    void bulkLoadRacingUpdateIsNotCached() {
+        JdbcFilmStorage delegate = mock(JdbcFilmStorage.class);
+        CachingFilmStorage storage = new CachingFilmStorage(delegate, 100, Duration.ofMinutes(10));
+        Film before = film(1, "До");
+        Film after = film(1, "После");
+        when(delegate.updateFilm(any())).thenReturn(after);
+        when(delegate.getFilmById(1)).thenReturn(after);
+        // Обновление приходит, пока пакетный запрос уже прочитал старую строку
+        when(delegate.getFilmsByIds(anyCollection())).thenAnswer(invocation -> {
+            storage.updateFilm(after);
+            return Map.of(1, before);
+        });
+
+        assertEquals("До", storage.getFilmsByIds(List.of(1)).get(1).getName());
+        assertEquals("После", storage.getFilmById(1).getName());
+        verify(delegate).getFilmById(1);
+    }
+
+    @Test
+    @DisplayName("Пакетная дочитка без параллельных обновлений наполняет кэш")
+    void bulkLoadFillsCache() {
+        JdbcFilmStorage delegate = mock(JdbcFilmStorage.class);
+        CachingFilmStorage storage = new CachingFilmStorage(delegate, 100, Duration.ofMinutes(10));
+        when(delegate.getFilmsByIds(anyCollection())).thenReturn(Map.of(1, film(1, "Первый"), 2, film(2, "Второй")));
+
+        assertEquals(2, storage.getFilmsByIds(List.of(1, 2, 3)).size());
+        assertEquals("Второй", storage.getFilmById(2).getName());
+        assertEquals(2, storage.getFilmsByIds(List.of(1, 2)).size());
+        verify(delegate, times(1)).getFilmsByIds(anyCollection());
+        verify(delegate, never()).getFilmById(anyInt());
+    }
+
+    private static Film film(int id, String name) {
+        Film film = new Film();
+        film.setId(id);
+        film.setName(name);
+        return film;
+    }
+}
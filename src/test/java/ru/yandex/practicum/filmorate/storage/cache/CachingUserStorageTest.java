@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.jdbc.user.JdbcUserStorage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class CachingUserStorageTest {
+
+    @Test
+    @DisplayName("Пользователь читается из базы один раз, обновление сбрасывает запись")
+    void readThroughAndInvalidateOnUpdate() {
+        JdbcUserStorage delegate = mock(JdbcUserStorage.class);
+        CachingUserStorage storage = new CachingUserStorage(delegate, 100, Duration.ofMinutes(10));
+        User before = user(1, "before");
+        User after = user(1, "after");
+        when(delegate.getUserById(1)).thenReturn(before, after);
+        when(delegate.updateUser(any())).thenReturn(after);
+
+        assertEquals("before", storage.getUserById(1).getLogin());
+        assertEquals("before", storage.getUserById(1).getLogin());
+        verify(delegate, times(1)).getUserById(1);
+
+        storage.updateUser(after);
+        assertEquals("after", storage.getUserById(1).getLogin());
+        verify(delegate, times(2)).getUserById(1);
+    }
+
+    @Test
+    @DisplayName("Созданные и прочитанные пользователи существуют без запроса к базе")
+    void existenceFromBitmap() {
+        JdbcUserStorage delegate = mock(JdbcUserStorage.class);
+        CachingUserStorage storage = new CachingUserStorage(delegate, 100, Duration.ofMinutes(10));
+        when(delegate.addUser(any())).thenReturn(user(3, "created"));
+        when(delegate.getUserById(1)).thenReturn(user(1, "read"));
+
+        storage.addUser(user(0, "created"));
+        storage.getUserById(1);
+
+        assertTrue(storage.userExists(3));
+        assertEquals(Set.of(1, 3), storage.getExistingUserIds(List.of(1, 3)));
+        verify(delegate, never()).userExists(anyInt());
+        verify(delegate, never()).getExistingUserIds(anyCollection());
+    }
+
+    private static User user(int id, String login) {
+        User user = new User();
+        user.setId(id);
+        user.setLogin(login);
+        return user;
+    }
+}
@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadThroughCacheTest {
+    // Хранилище за кэшем: id → значение, с подсчётом обращений
+    private final Map<Integer, String> store = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicInteger bulkLoads = new AtomicInteger();
+    private final AtomicInteger existsChecks = new AtomicInteger();
+    private final ReadThroughCache<String> cache = new ReadThroughCache<>("test", 100, Duration.ofMinutes(10),
+            this::load, this::loadAll, this::exists, this::existing);
+
+    @Test
+    @DisplayName("Промах читает хранилище, повторное чтение берётся из кэша")
+    void hitAndMiss() {
+        store.put(1, "Первый");
+
+        assertEquals("Первый", cache.get(1));
+        assertEquals("Первый", cache.get(1));
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+
+        // Отсутствующий id в кэш не попадает: следующее чтение снова идёт в хранилище
+        assertThrows(NotFoundException.class, () -> cache.get(2));
+        store.put(2, "Второй");
+        assertEquals("Второй", cache.get(2));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    @DisplayName("Пакетное чтение дочитывает одним запросом только недостающие записи")
+    void bulkReadLoadsOnlyMissing() {
+        store.put(1, "Первый");
+        store.put(2, "Второй");
+        cache.get(1);
+
+        assertEquals(Map.of(1, "Первый", 2, "Второй"), cache.getAll(List.of(1, 2, 3)));
+        assertEquals(1, bulkLoads.get());
+        assertEquals(Map.of(1, "Первый", 2, "Второй"), cache.getAll(List.of(1, 2)));
+        assertEquals(1, bulkLoads.get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("Изменение сбрасывает запись: следующее чтение видит новую версию")
+    void updateInvalidates() {
+        store.put(1, "До");
+        assertEquals("До", cache.get(1));
+
+        store.put(1, "После");
+        assertEquals("До", cache.get(1), "Без сброса кэш отдаёт прочитанную версию");
+        cache.updated(1);
+        assertEquals("После", cache.get(1));
+        assertEquals(Map.of(1, "После"), cache.getAll(List.of(1)));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Существование подтверждается один раз, дальше отвечает битовая карта")
+    void existenceBitmap() {
+        store.put(1, "Первый");
+        store.put(2, "Второй");
+
+        assertTrue(cache.exists(1));
+        assertTrue(cache.exists(1));
+        assertFalse(cache.exists(5));
+        assertFalse(cache.exists(5), "Отсутствие не запоминается");
+        assertEquals(3, existsChecks.get());
+
+        // Созданный id и прочитанные записи известны без обращения к хранилищу
+        cache.created(7);
+        cache.get(2);
+        assertEquals(Set.of(1, 2, 7), cache.existing(List.of(1, 2, 7)));
+        assertTrue(cache.exists(2));
+        assertEquals(3, existsChecks.get());
+        assertEquals(Set.of(1), cache.existing(List.of(1, 9)));
+        assertEquals(4, existsChecks.get());
+    }
+
+    private String load(int id) {
+        loads.incrementAndGet();
+        String value = store.get(id);
+        if (value == null) {
+            throw new NotFoundException("id=" + id + " not found");
+        }
+        return value;
+    }
+
+    private Map<Integer, String> loadAll(Collection<Integer> ids) {
+        bulkLoads.incrementAndGet();
+        Map<Integer, String> found = new HashMap<>();
+        ids.forEach(id -> {
+            if (store.containsKey(id)) {
+                found.put(id, store.get(id));
+            }
+        });
+        return found;
+    }
+
+    private boolean exists(int id) {
+        existsChecks.incrementAndGet();
+        return store.containsKey(id);
+    }
+
+    private Set<Integer> existing(Collection<Integer> ids) {
+        existsChecks.incrementAndGet();
+        Set<Integer> found = new HashSet<>(ids);
+        found.retainAll(store.keySet());
+        return found;
+    }
+}
@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.storage.jdbc;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.service.film.TrendingWindow;
+import ru.yandex.practicum.filmorate.storage.jdbc.like.JdbcLikeStorage;
+import ru.yandex.practicum.filmorate.storage.jdbc.like.LikeWriteMode;
+import ru.yandex.practicum.filmorate.storage.like.LikeStorage;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlywayMigrationTest {
+    private DataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = newDatabase();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    @DisplayName("Миграции на пустой базе дают ту же схему, что schema.sql")
+    void migratesEmptyDatabase() {
+        assertEquals(3, flyway(dataSource).migrate().migrationsExecuted);
+
+        assertEquals(referenceSchema(), schema(jdbcTemplate));
+        assertEquals(List.of("1", "2", "3"), appliedVersions());
+    }
+
+    @Test
+    @DisplayName("База, созданная через schema.sql до миграций, получает версию 0 и догоняет схему без потери данных")
+    void migratesSchemaSqlDatabase() {
+        // Схема до появления миграций: без времени лайка и индексов обратных направлений
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate.execute("DROP INDEX likes_created_at_idx");
+        jdbcTemplate.execute("DROP INDEX likes_user_id_idx");
+        jdbcTemplate.execute("DROP INDEX friends_friend_id_idx");
+        jdbcTemplate.execute("ALTER TABLE likes DROP COLUMN created_at");
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES ('u@mail.ru', 'u', 'u', DATE '2000-01-01')");
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration) "
+                + "VALUES ('f', 'd', DATE '2000-01-01', 90)");
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (1, 1)");
+
+        assertEquals(3, flyway(dataSource).migrate().migrationsExecuted);
+
+        assertEquals(referenceSchema(), schema(jdbcTemplate));
+        assertEquals(List.of("0", "1", "2", "3"), appliedVersions());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes", Integer.class));
+    }
+
+    @Test
+    @DisplayName("Лайки, поставленные до миграции V3, получают начало эпохи и в тренды не попадают")
+    void preMigrationLikesDoNotTrend() {
+        configure(dataSource).target("2").load().migrate();
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES ('u@mail.ru', 'u', 'u', DATE '2000-01-01')");
+        jdbcTemplate.update("INSERT INTO users (email, login, name, birthday) VALUES ('v@mail.ru', 'v', 'v', DATE '2000-01-01')");
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration) "
+                + "VALUES ('f', 'd', DATE '2000-01-01', 90)");
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (1, 1)");
+
+        flyway(dataSource).migrate();
+        // Лайк после миграции получает текущее время
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (1, 2)");
+
+        assertEquals(Timestamp.valueOf("1970-01-01 00:00:00"), jdbcTemplate.queryForObject(
+                "SELECT created_at FROM likes WHERE user_id = 1", Timestamp.class));
+        LikeStorage storage = new JdbcLikeStorage(jdbcTemplate, LikeWriteMode.SYNC, 500, 200, 10_000, 500);
+        List<Integer> trending = new ArrayList<>();
+        storage.forEachLikeSince(Instant.now().minus(TrendingWindow.WEEK.length()),
+                (filmId, userId, likedAt) -> trending.add(filmId));
+        assertEquals(List.of(1), trending);
+    }
+
+    @Test
+    @DisplayName("Повторный запуск на актуальной базе ничего не применяет")
+    void secondMigrateIsNoop() {
+        flyway(dataSource).migrate();
+        assertEquals(0, flyway(dataSource).migrate().migrationsExecuted);
+    }
+
+    // Версии успешно применённых миграций; строка создания схемы Flyway версии не имеет
+    private List<String> appliedVersions() {
+        return jdbcTemplate.queryForList("SELECT \"version\" FROM \"flyway_schema_history\" "
+                + "WHERE \"success\" AND \"version\" IS NOT NULL ORDER BY \"installed_rank\"", String.class);
+    }
+
+    // Те же настройки, что в application-prod.properties
+    private static Flyway flyway(DataSource dataSource) {
+        return configure(dataSource).load();
+    }
+
+    private static FluentConfiguration configure(DataSource dataSource) {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .baselineOnMigrate(true)
+                .baselineVersion("0");
+    }
+
+    private static DataSource newDatabase() {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+
+    // Схема базы, созданной через schema.sql, как в профиле по умолчанию
+    private static List<String> referenceSchema() {
+        DataSource reference = newDatabase();
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(reference);
+        JdbcTemplate template = new JdbcTemplate(reference);
+        try {
+            return schema(template);
+        } finally {
+            template.execute("SHUTDOWN");
+        }
+    }
+
+    // Столбцы с типами, обязательностью и значениями по умолчанию, и именованные индексы
+    private static List<String> schema(JdbcTemplate template) {
+        List<String> schema = new ArrayList<>(template.queryForList(
+                "SELECT TABLE_NAME || '.' || COLUMN_NAME || ' ' || DATA_TYPE || ' ' || IS_NULLABLE || ' ' "
+                        + "|| COALESCE(COLUMN_DEFAULT, '-') FROM INFORMATION_SCHEMA.COLUMNS "
+                        + "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME <> 'flyway_schema_history' ORDER BY 1",
+                String.class));
+        schema.addAll(template.queryForList(
+                "SELECT TABLE_NAME || ' ' || INDEX_NAME FROM INFORMATION_SCHEMA.INDEXES "
+                        + "WHERE TABLE_SCHEMA = 'PUBLIC' AND INDEX_NAME LIKE '%_IDX' ORDER BY 1",
+                String.class));
+        return schema;
+    }
+}
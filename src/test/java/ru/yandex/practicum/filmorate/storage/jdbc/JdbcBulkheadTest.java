@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.storage.jdbc;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcBulkheadTest {
+    private static final Duration TIMEOUT = Duration.ofMillis(50);
+
+    @Test
+    @DisplayName("Без свободного разрешения соединение не выдаётся дольше acquire-timeout, запрос получает 503")
+    void rejectsAfterAcquireTimeout() throws SQLException {
+        DataSource dataSource = new JdbcBulkhead.BulkheadDataSource(database(), 1, TIMEOUT);
+        try (Connection ignored = dataSource.getConnection()) {
+            long started = System.nanoTime();
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+            assertTrue(System.nanoTime() - started >= TIMEOUT.toNanos());
+            // JdbcTemplate переводит отказ в CannotGetJdbcConnectionException, на который ErrorHandler отвечает 503
+            assertThrows(CannotGetJdbcConnectionException.class,
+                    () -> new JdbcTemplate(dataSource).queryForObject("SELECT 1", Integer.class));
+        }
+        assertEquals(1, new JdbcTemplate(dataSource).queryForObject("SELECT 1", Integer.class));
+    }
+
+    @Test
+    @DisplayName("Повторный close() возвращает разрешение только один раз")
+    void doubleCloseReleasesOnce() throws SQLException {
+        DataSource dataSource = new JdbcBulkhead.BulkheadDataSource(database(), 1, TIMEOUT);
+        Connection first = dataSource.getConnection();
+        first.close();
+        first.close();
+
+        try (Connection ignored = dataSource.getConnection()) {
+            // Лишнее разрешение от второго close() пропустило бы второе соединение
+            assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+        }
+    }
+
+    @Test
+    @DisplayName("Ошибка получения соединения из пула возвращает разрешение")
+    void failedConnectReleasesPermit() {
+        DataSource dataSource = new JdbcBulkhead.BulkheadDataSource(
+                new DriverManagerDataSource("jdbc:unknown:db"), 1, TIMEOUT);
+
+        for (int i = 0; i < 3; i++) {
+            SQLException e = assertThrows(SQLException.class, dataSource::getConnection);
+            assertFalse(e instanceof SQLTransientConnectionException, "Разрешение не должно теряться");
+        }
+    }
+
+    private static DataSource database() {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
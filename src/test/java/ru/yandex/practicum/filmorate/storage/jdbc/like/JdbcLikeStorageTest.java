@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.storage.jdbc.like;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcLikeStorageTest {
+    private JdbcTemplate jdbcTemplate;
+    private JdbcLikeStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        // Отдельная база на тест; таймер сброса отложен на час, сбросы вызываются явно
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE likes (film_id INT NOT NULL, user_id INT NOT NULL, "
+                + "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL, PRIMARY KEY (film_id, user_id))");
+        storage = new JdbcLikeStorage(jdbcTemplate, LikeWriteMode.WRITE_BEHIND, 500, 3_600_000, 10_000, 500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.shutdown();
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    @DisplayName("Сброс пишет в базу последнее действие по каждой паре")
+    void flushWritesLastAction() {
+        storage.addLike(1, 1);
+        storage.addLike(1, 2);
+        storage.addLike(2, 1);
+        assertEquals(List.of(), likes(), "До сброса база не меняется");
+
+        storage.flush();
+        assertEquals(List.of("1:1", "1:2", "2:1"), likes());
+
+        storage.removeLike(1, 2);
+        storage.addLike(2, 2);
+        storage.removeLike(2, 2);
+        storage.flush();
+        assertEquals(List.of("1:1", "2:1"), likes());
+    }
+
+    @Test
+    @DisplayName("Неудачный сброс не теряет изменения и повторяется следующим")
+    void failedFlushIsRetried() {
+        storage.addLike(1, 1);
+        storage.flush();
+        storage.addLike(1, 2);
+        storage.removeLike(1, 1);
+
+        jdbcTemplate.execute("ALTER TABLE likes RENAME TO likes_offline");
+        assertThrows(DataAccessException.class, storage::flush);
+        // Изменение, пришедшее после неудачного сброса, не затирается возвращёнными в буфер
+        storage.removeLike(1, 2);
+        storage.addLike(3, 1);
+        jdbcTemplate.execute("ALTER TABLE likes_offline RENAME TO likes");
+
+        storage.flush();
+        assertEquals(List.of("3:1"), likes());
+    }
+
+    @Test
+    @DisplayName("Остановка дописывает буфер в базу")
+    void shutdownFlushesPending() {
+        storage.addLike(5, 7);
+        storage.addLikes(List.of(new FilmLike(6, 7, Instant.EPOCH), new FilmLike(6, 8, Instant.EPOCH)));
+        storage.shutdown();
+        assertEquals(List.of("5:7", "6:7", "6:8"), likes());
+    }
+
+    @Test
+    @DisplayName("Время лайка сохраняется то, что передано, а не время сброса")
+    void keepsLikeTime() {
+        Instant imported = Instant.parse("2020-05-01T10:00:00Z");
+        long before = System.currentTimeMillis();
+        storage.addLike(1, 1);
+        storage.addLikes(List.of(new FilmLike(2, 1, imported)));
+        storage.flush();
+
+        assertEquals(Timestamp.from(imported), jdbcTemplate.queryForObject(
+                "SELECT created_at FROM likes WHERE film_id = 2", Timestamp.class));
+        List<Integer> recent = new ArrayList<>();
+        storage.forEachLikeSince(Instant.ofEpochMilli(before), (filmId, userId, likedAt) -> recent.add(filmId));
+        assertEquals(List.of(1), recent);
+    }
+
+    @Test
+    @DisplayName("Полный буфер сбрасывается на потоке запроса, а при недоступной базе не растёт")
+    void fullBufferFlushesSynchronously() {
+        // Буфер на две пары
+        JdbcLikeStorage bounded = new JdbcLikeStorage(jdbcTemplate, LikeWriteMode.WRITE_BEHIND,
+                500, 3_600_000, 2, 500);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        bounded.bindTo(registry);
+        try {
+            bounded.addLike(1, 1);
+            bounded.addLike(1, 2);
+            assertEquals(List.of(), likes());
+            // Повтор пары, уже лежащей в буфере, места не занимает
+            bounded.removeLike(1, 2);
+            assertEquals(List.of(), likes());
+
+            bounded.addLike(1, 3);
+            assertEquals(List.of("1:1"), likes());
+            assertEquals(1.0, registry.get("filmorate.likes.pending").gauge().value());
+
+            jdbcTemplate.execute("ALTER TABLE likes RENAME TO likes_offline");
+            bounded.addLike(2, 1);
+            assertThrows(DataAccessException.class, () -> bounded.addLike(2, 2));
+            assertEquals(2.0, registry.get("filmorate.likes.pending").gauge().value());
+            jdbcTemplate.execute("ALTER TABLE likes_offline RENAME TO likes");
+
+            bounded.addLike(2, 2);
+            bounded.flush();
+            assertEquals(List.of("1:1", "1:3", "2:1", "2:2"), likes());
+        } finally {
+            bounded.shutdown();
+        }
+    }
+
+    private List<String> likes() {
+        return jdbcTemplate.queryForList(
+                "SELECT film_id || ':' || user_id FROM likes ORDER BY film_id, user_id", String.class);
+    }
+}
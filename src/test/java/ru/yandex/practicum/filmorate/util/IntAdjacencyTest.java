@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntAdjacencyTest {
+
+    @Test
+    @DisplayName("Встречные пересечения двух ключей под нагрузкой записи не взаимоблокируются")
+    void intersectUnderConcurrentWrites() throws Exception {
+        IntAdjacency adjacency = new IntAdjacency();
+        // Ключи в разных полосах блокировок, общие связи — чётные числа
+        int first = 1;
+        int second = 2;
+        for (int value = 0; value < 1000; value++) {
+            adjacency.add(first, value);
+            if (value % 2 == 0) {
+                adjacency.add(second, value);
+            }
+        }
+
+        int threads = 8;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int worker = t;
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        switch (worker % 4) {
+                            case 0 -> assertCommon(adjacency.intersect(first, second));
+                            case 1 -> assertCommon(adjacency.intersect(second, first));
+                            // Писатели трогают только значения вне общей части
+                            case 2 -> {
+                                adjacency.add(first, 5001);
+                                adjacency.remove(first, 5001);
+                            }
+                            default -> {
+                                adjacency.add(second, 5003);
+                                adjacency.remove(second, 5003);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) {
+                // Взаимоблокировка оставила бы задачу висеть дольше отведённого времени
+                task.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(500, adjacency.intersect(first, second).length);
+        assertEquals(1500, adjacency.edgeCount());
+    }
+
+    @Test
+    @DisplayName("Связи добавляются и убираются по одной, счётчики следуют за ними")
+    void addRemoveAndCounts() {
+        IntAdjacency adjacency = new IntAdjacency();
+        assertTrue(adjacency.add(1, 30));
+        assertTrue(adjacency.add(1, 10));
+        assertTrue(adjacency.add(1, 70_000));
+        assertFalse(adjacency.add(1, 10), "Повторная связь");
+        assertTrue(adjacency.add(2, 10));
+
+        assertArrayEquals(new int[]{10, 30, 70_000}, adjacency.values(1));
+        assertEquals(3, adjacency.size(1));
+        assertTrue(adjacency.contains(1, 70_000));
+        assertFalse(adjacency.contains(2, 30));
+        assertEquals(4, adjacency.edgeCount());
+
+        assertTrue(adjacency.remove(2, 10));
+        assertFalse(adjacency.remove(2, 10), "Связи уже нет");
+        assertFalse(adjacency.remove(3, 10), "Ключа нет");
+        assertEquals(3, adjacency.edgeCount());
+        assertArrayEquals(new int[0], adjacency.values(2));
+        assertArrayEquals(new int[0], adjacency.values(3));
+        assertEquals(0, adjacency.size(3));
+
+        // Опустевший ключ остаётся заведённым, но при обходе пропускается
+        assertEquals(2, adjacency.keyCount());
+        List<Integer> keys = new ArrayList<>();
+        adjacency.forEachKey(keys::add);
+        assertEquals(List.of(1), keys);
+    }
+
+    @Test
+    @DisplayName("Пересечение с отсутствующим ключом пусто")
+    void intersectWithMissingKey() {
+        IntAdjacency adjacency = new IntAdjacency();
+        adjacency.add(1, 10);
+        assertArrayEquals(new int[0], adjacency.intersect(1, 2));
+        assertArrayEquals(new int[0], adjacency.intersect(2, 1));
+        assertArrayEquals(new int[]{10}, adjacency.intersect(1, 1));
+    }
+
+    private static void assertCommon(int[] common) {
+        assertEquals(500, common.length);
+        for (int i = 0; i < common.length; i++) {
+            assertEquals(i * 2, common[i]);
+        }
+    }
+}
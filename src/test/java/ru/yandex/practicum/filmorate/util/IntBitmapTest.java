@@ -0,0 +1,211 @@
+package ru.yandex.practicum.filmorate.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntBitmapTest {
+    // Порог перехода блока из массива в битовую карту и обратно (см. IntBitmap.ARRAY_LIMIT)
+    private static final int ARRAY_LIMIT = 4096;
+
+    @Test
+    @DisplayName("Блок переходит в битовую карту после 4096 значений и возвращается в массив на 2048")
+    void containerSwitchesAtLimits() {
+        IntBitmap bitmap = new IntBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        // Чётные значения первого блока: массив заполняется до предела
+        for (int i = 0; i < ARRAY_LIMIT; i++) {
+            assertTrue(bitmap.add(i * 2));
+            expected.add(i * 2);
+        }
+        assertContent(bitmap, expected);
+        assertFalse(bitmap.add(0), "Повторное добавление на пределе массива");
+        assertEquals(ARRAY_LIMIT, bitmap.cardinality());
+
+        // 4097-е значение переводит блок в битовую карту
+        assertTrue(bitmap.add(1));
+        expected.add(1);
+        assertContent(bitmap, expected);
+        assertFalse(bitmap.add(1));
+        assertFalse(bitmap.remove(3), "Удаление отсутствующего значения из битовой карты");
+
+        // Удаление до 2049 значений оставляет битовую карту, до 2048 — возвращает массив
+        while (expected.size() > ARRAY_LIMIT / 2 + 1) {
+            int value = expected.pollLast();
+            assertTrue(bitmap.remove(value));
+        }
+        assertContent(bitmap, expected);
+        int value = expected.pollLast();
+        assertTrue(bitmap.remove(value));
+        assertContent(bitmap, expected);
+        assertFalse(bitmap.remove(value));
+
+        // После возврата в массив блок снова растёт и переходит в битовую карту
+        for (int i = 0; expected.size() <= ARRAY_LIMIT; i++) {
+            int added = 20_001 + i * 2;
+            assertTrue(bitmap.add(added));
+            expected.add(added);
+        }
+        assertContent(bitmap, expected);
+    }
+
+    @Test
+    @DisplayName("Удаление последнего значения убирает блок целиком")
+    void removingWholeBlock() {
+        IntBitmap bitmap = IntBitmap.of(5, 65_536 + 5, 131_072 + 5);
+        assertTrue(bitmap.remove(65_536 + 5));
+        assertArrayEquals(new int[]{5, 131_072 + 5}, bitmap.toArray());
+        assertFalse(bitmap.contains(65_536 + 5));
+
+        // Блок в виде битовой карты опустошается через возврат в массив
+        for (int i = 0; i <= ARRAY_LIMIT; i++) {
+            bitmap.add(65_536 + i);
+        }
+        for (int i = 0; i <= ARRAY_LIMIT; i++) {
+            assertTrue(bitmap.remove(65_536 + i));
+        }
+        assertArrayEquals(new int[]{5, 131_072 + 5}, bitmap.toArray());
+        assertTrue(bitmap.remove(5));
+        assertTrue(bitmap.remove(131_072 + 5));
+        assertTrue(bitmap.isEmpty());
+        assertArrayEquals(new int[0], bitmap.toArray());
+
+        // Опустевшее множество снова принимает значения в новые блоки
+        assertTrue(bitmap.add(1_000_000));
+        assertTrue(bitmap.add(7));
+        assertArrayEquals(new int[]{7, 1_000_000}, bitmap.toArray());
+    }
+
+    @Test
+    @DisplayName("Значения выше 65535 разносятся по блокам и обходятся по возрастанию")
+    void valuesAcrossBlocks() {
+        IntBitmap bitmap = IntBitmap.of(Integer.MAX_VALUE, 70_000, 65_535, 65_536, 0, 1_000_000_000);
+        int[] expected = {0, 65_535, 65_536, 70_000, 1_000_000_000, Integer.MAX_VALUE};
+        assertArrayEquals(expected, bitmap.toArray());
+        List<Integer> visited = new ArrayList<>();
+        bitmap.forEach(visited::add);
+        assertEquals(List.of(0, 65_535, 65_536, 70_000, 1_000_000_000, Integer.MAX_VALUE), visited);
+        assertTrue(bitmap.contains(65_536));
+        assertFalse(bitmap.contains(65_537));
+        assertFalse(bitmap.contains(131_072));
+    }
+
+    @Test
+    @DisplayName("and и andCardinality совпадают с эталоном для всех сочетаний видов блоков")
+    void intersectionsAcrossContainerTypes() {
+        Random random = new Random(42);
+        // Блок 0 плотный с обеих сторон, блок 1 плотный только у первого, блок 2 разреженный у обоих,
+        // блок 3 есть только у второго, блок 4 плотный только у второго
+        int[][] sizes = {{30_000, 20_000}, {10_000, 300}, {500, 700}, {0, 900}, {200, 9_000}};
+        IntBitmap first = new IntBitmap();
+        IntBitmap second = new IntBitmap();
+        TreeSet<Integer> firstExpected = new TreeSet<>();
+        TreeSet<Integer> secondExpected = new TreeSet<>();
+        for (int block = 0; block < sizes.length; block++) {
+            fill(first, firstExpected, block, sizes[block][0], random);
+            fill(second, secondExpected, block, sizes[block][1], random);
+        }
+        TreeSet<Integer> common = new TreeSet<>(firstExpected);
+        common.retainAll(secondExpected);
+
+        assertContent(first.and(second), common);
+        assertContent(second.and(first), common);
+        assertEquals(common.size(), first.andCardinality(second));
+        assertEquals(common.size(), second.andCardinality(first));
+        // Исходные множества не меняются
+        assertContent(first, firstExpected);
+        assertContent(second, secondExpected);
+
+        // Пересечение двух плотных блоков с малым общим результатом и с пустым множеством
+        IntBitmap evens = new IntBitmap();
+        IntBitmap odds = new IntBitmap();
+        for (int i = 0; i < 10_000; i++) {
+            evens.add(i * 2);
+            odds.add(i * 2 + 1);
+        }
+        odds.add(100);
+        assertArrayEquals(new int[]{100}, evens.and(odds).toArray());
+        assertEquals(1, evens.andCardinality(odds));
+        assertTrue(evens.and(new IntBitmap()).isEmpty());
+        assertEquals(0, new IntBitmap().andCardinality(evens));
+    }
+
+    @Test
+    @DisplayName("addAll объединяет блоки всех видов и не меняет добавленное множество")
+    void addAllAcrossContainerTypes() {
+        Random random = new Random(7);
+        // Блок 0: массив + массив с переходом в карту, блок 1: массив + карта, блок 2: карта + массив,
+        // блок 3: карта + карта, блок 4 есть только у второго, блок 5 — только у первого
+        int[][] sizes = {{3_000, 3_000}, {100, 6_000}, {6_000, 100}, {5_000, 5_000}, {0, 50}, {70, 0}};
+        IntBitmap first = new IntBitmap();
+        IntBitmap second = new IntBitmap();
+        TreeSet<Integer> firstExpected = new TreeSet<>();
+        TreeSet<Integer> secondExpected = new TreeSet<>();
+        for (int block = 0; block < sizes.length; block++) {
+            fill(first, firstExpected, block, sizes[block][0], random);
+            fill(second, secondExpected, block, sizes[block][1], random);
+        }
+        TreeSet<Integer> union = new TreeSet<>(firstExpected);
+        union.addAll(secondExpected);
+
+        first.addAll(second);
+        assertContent(first, union);
+        assertContent(second, secondExpected);
+        // Блоки не разделяются: изменение объединения не задевает второе множество
+        for (int value : secondExpected) {
+            first.remove(value);
+        }
+        assertContent(second, secondExpected);
+
+        IntBitmap empty = new IntBitmap();
+        empty.addAll(second);
+        assertContent(empty, secondExpected);
+        empty.addAll(new IntBitmap());
+        assertContent(empty, secondExpected);
+    }
+
+    @Test
+    @DisplayName("Копия независима от оригинала")
+    void copyIsIndependent() {
+        IntBitmap original = new IntBitmap();
+        for (int i = 0; i <= ARRAY_LIMIT; i++) {
+            original.add(i);
+        }
+        original.add(100_000);
+        IntBitmap copy = original.copy();
+        copy.remove(0);
+        copy.remove(100_000);
+        copy.add(200_000);
+        assertTrue(original.contains(0));
+        assertTrue(original.contains(100_000));
+        assertFalse(original.contains(200_000));
+        assertEquals(ARRAY_LIMIT + 2, original.cardinality());
+        assertEquals(ARRAY_LIMIT + 1, copy.cardinality());
+    }
+
+    private static void fill(IntBitmap bitmap, TreeSet<Integer> expected, int block, int count, Random random) {
+        int added = 0;
+        while (added < count) {
+            int value = (block << 16) | random.nextInt(1 << 16);
+            boolean isNew = expected.add(value);
+            assertEquals(isNew, bitmap.add(value));
+            if (isNew) {
+                added++;
+            }
+        }
+    }
+
+    private static void assertContent(IntBitmap bitmap, TreeSet<Integer> expected) {
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), bitmap.toArray());
+        for (int value : expected) {
+            assertTrue(bitmap.contains(value));
+        }
+    }
+}